@@ -0,0 +1,106 @@
+package com.buggysofts.android.batchworker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the worker throughput (items/sec) of the blocking, two round trips per item progress
+ * updates with the frame-coalesced {@link ProgressPublisher}. Run on a device, the numbers are logged
+ * under the {@value #TAG} tag.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProgressPublishingBenchmark {
+    private static final String TAG = "BatchWorkerBenchmark";
+    private static final int ITEM_COUNT = 20_000;
+
+    @Test
+    public void compareBlockingAndCoalescedProgress() {
+        double blockingRate = measureBlocking();
+        double coalescedRate = measureCoalesced();
+        Log.i(
+            TAG,
+            String.format(
+                "blocking: %.0f items/sec, coalesced: %.0f items/sec, speedup: %.1fx",
+                blockingRate,
+                coalescedRate,
+                coalescedRate / blockingRate
+            )
+        );
+        assertTrue(coalescedRate > blockingRate);
+    }
+
+    private double measureBlocking() {
+        AtomicInteger renders = new AtomicInteger(0);
+        Runnable render = new Runnable() {
+            @Override
+            public void run() {
+                renders.incrementAndGet();
+            }
+        };
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < ITEM_COUNT; ++i) {
+            Loopers.runLocked(Looper.getMainLooper(), render);
+            consume(i);
+            Loopers.runLocked(Looper.getMainLooper(), render);
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        assertEquals(2 * ITEM_COUNT, renders.get());
+        return ITEM_COUNT / (elapsed / 1e9);
+    }
+
+    private double measureCoalesced() {
+        AtomicInteger lastCompleted = new AtomicInteger(0);
+        ProgressPublisher<Void> publisher = new ProgressPublisher<>(
+            new ProgressPublisher.Renderer<Void>() {
+                @Override
+                public Void prepare(int activeIndex, int completedCount) {
+                    return null;
+                }
+
+                @Override
+                public void render(Void prepared, boolean preparedChanged, int activeIndex, int completedCount) {
+                    lastCompleted.set(completedCount);
+                }
+            }
+        );
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < ITEM_COUNT; ++i) {
+            publisher.publish(i, i);
+            consume(i);
+            publisher.publish(i, i + 1);
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(
+            new Runnable() {
+                @Override
+                public void run() {
+                    publisher.flushAndStop();
+                }
+            }
+        );
+        assertEquals(ITEM_COUNT, lastCompleted.get());
+        return ITEM_COUNT / (elapsed / 1e9);
+    }
+
+    private static volatile long sink;
+
+    private static void consume(int i) {
+        // stands in for a small task
+        sink += i;
+    }
+}
@@ -0,0 +1,21 @@
+package com.buggysofts.android.batchworker;
+
+/**
+ * What a {@link ResultStream} does with a result when its buffer is full.
+ */
+public enum BackpressurePolicy {
+    /**
+     * The worker thread waits for the observer to catch up, so a slow observer slows the tasks down.
+     */
+    BLOCK,
+
+    /**
+     * The oldest buffered result is dropped to make room.
+     */
+    DROP_OLDEST,
+
+    /**
+     * The new result is dropped.
+     */
+    DROP_LATEST
+}
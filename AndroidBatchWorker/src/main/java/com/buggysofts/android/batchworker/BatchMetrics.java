@@ -0,0 +1,222 @@
+package com.buggysofts.android.batchworker;
+
+import android.os.Trace;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the timings of a running batch. Recording costs a few atomic operations per task, so it is
+ * always on. Optionally, the phases and the tasks are also emitted as {@link Trace} sections.
+ */
+class BatchMetrics {
+    private final boolean traceEnabled;
+    private final LatencyHistogram itemLatencies;
+    private final AtomicLong uiBlockedNanos;
+    private final AtomicLong totalTaskNanos;
+    private final AtomicLong rateLimitWaitNanos;
+    private final AtomicLong keyConcurrencyWaitNanos;
+    private final AtomicInteger completedItemCount;
+    private final AtomicInteger failedItemCount;
+    private final AtomicInteger retryCount;
+    private final AtomicInteger cacheHitCount;
+    private final AtomicInteger cacheMissCount;
+    private final AtomicInteger deadlineMissCount;
+    private final AtomicInteger timedOutTaskCount;
+    private final AtomicInteger stallCount;
+    private final AtomicInteger deduplicatedItemCount;
+    private final AtomicInteger inFlightTasks;
+    private final AtomicInteger maxInFlightTasks;
+    private final AtomicInteger maxQueueDepth;
+
+    private volatile boolean batchTimedOut;
+    private final long submitTimeNanos;
+    private long startTimeNanos;
+    private long taskPhaseStartNanos;
+    private long postWorkStartNanos;
+
+    BatchMetrics(boolean traceEnabled) {
+        this.traceEnabled = traceEnabled;
+        this.itemLatencies = new LatencyHistogram();
+        this.uiBlockedNanos = new AtomicLong(0);
+        this.totalTaskNanos = new AtomicLong(0);
+        this.rateLimitWaitNanos = new AtomicLong(0);
+        this.keyConcurrencyWaitNanos = new AtomicLong(0);
+        this.completedItemCount = new AtomicInteger(0);
+        this.failedItemCount = new AtomicInteger(0);
+        this.retryCount = new AtomicInteger(0);
+        this.cacheHitCount = new AtomicInteger(0);
+        this.cacheMissCount = new AtomicInteger(0);
+        this.deadlineMissCount = new AtomicInteger(0);
+        this.timedOutTaskCount = new AtomicInteger(0);
+        this.stallCount = new AtomicInteger(0);
+        this.deduplicatedItemCount = new AtomicInteger(0);
+        this.inFlightTasks = new AtomicInteger(0);
+        this.maxInFlightTasks = new AtomicInteger(0);
+        this.maxQueueDepth = new AtomicInteger(0);
+        this.submitTimeNanos = System.nanoTime();
+    }
+
+    void onBatchStart() {
+        startTimeNanos = System.nanoTime();
+        beginSection("BatchWorker:preWork");
+    }
+
+    void onTaskPhaseStart() {
+        endSection();
+        taskPhaseStartNanos = System.nanoTime();
+        beginSection("BatchWorker:tasks");
+    }
+
+    void onPostWorkStart() {
+        endSection();
+        postWorkStartNanos = System.nanoTime();
+        beginSection("BatchWorker:postWork");
+    }
+
+    /**
+     * Mark the start of the task of one or more data items on the calling thread.
+     *
+     * @return the start time, to pass to {@link #onTaskEnd(long, int)}.
+     */
+    long onTaskStart() {
+        raiseMax(maxInFlightTasks, inFlightTasks.incrementAndGet());
+        beginSection("BatchWorker:task");
+        return System.nanoTime();
+    }
+
+    /**
+     * Record a sample of the number of tasks waiting for a thread of the executor.
+     */
+    void onQueueDepth(int depth) {
+        raiseMax(maxQueueDepth, depth);
+    }
+
+    /**
+     * Mark the end of a task started by {@link #onTaskStart()}.
+     *
+     * @param itemCount number of data items the task was performed for (successfully or not),
+     *                  the duration is split evenly among them.
+     */
+    void onTaskEnd(long startNanos, int itemCount) {
+        long elapsed = System.nanoTime() - startNanos;
+        endSection();
+        inFlightTasks.decrementAndGet();
+        if (itemCount > 0) {
+            itemLatencies.record(elapsed / itemCount, itemCount);
+            totalTaskNanos.addAndGet(elapsed);
+            completedItemCount.addAndGet(itemCount);
+        }
+    }
+
+    int getCompletedItemCount() {
+        return completedItemCount.get();
+    }
+
+    /**
+     * Sum of the durations of the completed tasks.
+     */
+    long getTotalTaskNanos() {
+        return totalTaskNanos.get();
+    }
+
+    void onItemsFailed(int itemCount) {
+        failedItemCount.addAndGet(itemCount);
+    }
+
+    void onRetry() {
+        retryCount.incrementAndGet();
+    }
+
+    void onCacheLookup(boolean hit) {
+        (hit ? cacheHitCount : cacheMissCount).incrementAndGet();
+    }
+
+    void onDeadlineMissed() {
+        deadlineMissCount.incrementAndGet();
+    }
+
+    void onTaskTimedOut() {
+        timedOutTaskCount.incrementAndGet();
+    }
+
+    void onStall() {
+        stallCount.incrementAndGet();
+    }
+
+    void onItemDeduplicated() {
+        deduplicatedItemCount.incrementAndGet();
+    }
+
+    void onBatchTimedOut() {
+        batchTimedOut = true;
+    }
+
+    void addRateLimitWaitNanos(long nanos) {
+        rateLimitWaitNanos.addAndGet(nanos);
+    }
+
+    void addKeyConcurrencyWaitNanos(long nanos) {
+        keyConcurrencyWaitNanos.addAndGet(nanos);
+    }
+
+    void addUiBlockedNanos(long nanos) {
+        uiBlockedNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Snapshot the statistics, at the end of the batch.
+     */
+    @NonNull
+    BatchStats onBatchEnd(boolean completed) {
+        endSection();
+        long endNanos = System.nanoTime();
+        long taskPhaseEnd = postWorkStartNanos != 0 ? postWorkStartNanos : endNanos;
+        return new BatchStats(
+            completed,
+            batchTimedOut,
+            completedItemCount.get(),
+            failedItemCount.get(),
+            retryCount.get(),
+            cacheHitCount.get(),
+            cacheMissCount.get(),
+            deadlineMissCount.get(),
+            timedOutTaskCount.get(),
+            stallCount.get(),
+            deduplicatedItemCount.get(),
+            startTimeNanos - submitTimeNanos,
+            (taskPhaseStartNanos != 0 ? taskPhaseStartNanos : endNanos) - startTimeNanos,
+            taskPhaseStartNanos != 0 ? taskPhaseEnd - taskPhaseStartNanos : 0,
+            postWorkStartNanos != 0 ? endNanos - postWorkStartNanos : 0,
+            uiBlockedNanos.get(),
+            rateLimitWaitNanos.get(),
+            keyConcurrencyWaitNanos.get(),
+            itemLatencies.getPercentile(50),
+            itemLatencies.getPercentile(95),
+            itemLatencies.getPercentile(99),
+            maxInFlightTasks.get(),
+            maxQueueDepth.get()
+        );
+    }
+
+    private static void raiseMax(AtomicInteger max, int value) {
+        int current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {
+            // retry
+        }
+    }
+
+    private void beginSection(String name) {
+        if (traceEnabled) {
+            Trace.beginSection(name);
+        }
+    }
+
+    private void endSection() {
+        if (traceEnabled) {
+            Trace.endSection();
+        }
+    }
+}
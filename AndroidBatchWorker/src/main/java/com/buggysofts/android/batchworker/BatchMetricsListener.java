@@ -0,0 +1,19 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+/**
+ * Receives the statistics of a batch when it is over, see
+ * {@link BatchWorker#setMetricsListener(BatchMetricsListener)}.
+ */
+public interface BatchMetricsListener {
+    /**
+     * Called on the batch thread after {@link WorkerCallBack#onShortPostWork(java.util.List, boolean)},
+     * for completed and cancelled batches alike.
+     *
+     * @param stats statistics of the batch.
+     */
+    @WorkerThread
+    public void onBatchMetrics(@NonNull BatchStats stats);
+}
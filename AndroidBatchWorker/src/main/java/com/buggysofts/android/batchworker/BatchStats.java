@@ -0,0 +1,299 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * Statistics of a finished batch. All the durations are in nanoseconds.
+ */
+public class BatchStats {
+    private final boolean completed;
+    private final boolean timedOut;
+    private final int completedItemCount;
+    private final int failedItemCount;
+    private final int retryCount;
+    private final int cacheHitCount;
+    private final int cacheMissCount;
+    private final int deadlineMissCount;
+    private final int timedOutTaskCount;
+    private final int stallCount;
+    private final int deduplicatedItemCount;
+    private final long queueWaitNanos;
+    private final long preWorkNanos;
+    private final long taskPhaseNanos;
+    private final long postWorkNanos;
+    private final long uiBlockedNanos;
+    private final long rateLimitWaitNanos;
+    private final long keyConcurrencyWaitNanos;
+    private final long itemLatencyP50Nanos;
+    private final long itemLatencyP95Nanos;
+    private final long itemLatencyP99Nanos;
+    private final int maxInFlightTasks;
+    private final int maxQueueDepth;
+
+    BatchStats(boolean completed,
+               boolean timedOut,
+               int completedItemCount,
+               int failedItemCount,
+               int retryCount,
+               int cacheHitCount,
+               int cacheMissCount,
+               int deadlineMissCount,
+               int timedOutTaskCount,
+               int stallCount,
+               int deduplicatedItemCount,
+               long queueWaitNanos,
+               long preWorkNanos,
+               long taskPhaseNanos,
+               long postWorkNanos,
+               long uiBlockedNanos,
+               long rateLimitWaitNanos,
+               long keyConcurrencyWaitNanos,
+               long itemLatencyP50Nanos,
+               long itemLatencyP95Nanos,
+               long itemLatencyP99Nanos,
+               int maxInFlightTasks,
+               int maxQueueDepth) {
+        this.completed = completed;
+        this.timedOut = timedOut;
+        this.completedItemCount = completedItemCount;
+        this.failedItemCount = failedItemCount;
+        this.retryCount = retryCount;
+        this.cacheHitCount = cacheHitCount;
+        this.cacheMissCount = cacheMissCount;
+        this.deadlineMissCount = deadlineMissCount;
+        this.timedOutTaskCount = timedOutTaskCount;
+        this.stallCount = stallCount;
+        this.deduplicatedItemCount = deduplicatedItemCount;
+        this.queueWaitNanos = queueWaitNanos;
+        this.preWorkNanos = preWorkNanos;
+        this.taskPhaseNanos = taskPhaseNanos;
+        this.postWorkNanos = postWorkNanos;
+        this.uiBlockedNanos = uiBlockedNanos;
+        this.rateLimitWaitNanos = rateLimitWaitNanos;
+        this.keyConcurrencyWaitNanos = keyConcurrencyWaitNanos;
+        this.itemLatencyP50Nanos = itemLatencyP50Nanos;
+        this.itemLatencyP95Nanos = itemLatencyP95Nanos;
+        this.itemLatencyP99Nanos = itemLatencyP99Nanos;
+        this.maxInFlightTasks = maxInFlightTasks;
+        this.maxQueueDepth = maxQueueDepth;
+    }
+
+    /**
+     * Whether the batch ran for all the input data, i.e. it was not cancelled.
+     */
+    public boolean isCompleted() {
+        return completed;
+    }
+
+    /**
+     * Whether the batch was cancelled for running longer than its timeout, see
+     * {@link BatchWorker#setBatchTimeout(long)}.
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Number of data items whose task completed, including the failed ones.
+     */
+    public int getCompletedItemCount() {
+        return completedItemCount;
+    }
+
+    /**
+     * Number of data items whose task failed after all its attempts.
+     */
+    public int getFailedItemCount() {
+        return failedItemCount;
+    }
+
+    /**
+     * Number of retried attempts across all the tasks.
+     */
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * Number of data items whose result was found in the result cache.
+     */
+    public int getCacheHitCount() {
+        return cacheHitCount;
+    }
+
+    /**
+     * Number of data items whose result was looked up in the result cache, but not found.
+     */
+    public int getCacheMissCount() {
+        return cacheMissCount;
+    }
+
+    /**
+     * Ratio of the result cache lookups that found a result, or 0 if there were none.
+     */
+    public double getCacheHitRatio() {
+        int lookups = cacheHitCount + cacheMissCount;
+        return lookups > 0 ? (double) cacheHitCount / lookups : 0;
+    }
+
+    /**
+     * Number of data items whose task completed after their deadline, see {@link SchedulingPolicy}.
+     */
+    public int getDeadlineMissCount() {
+        return deadlineMissCount;
+    }
+
+    /**
+     * Number of task attempts that ran longer than the task timeout, see
+     * {@link BatchWorker#setTaskTimeout(long, TimeoutAction)}.
+     */
+    public int getTimedOutTaskCount() {
+        return timedOutTaskCount;
+    }
+
+    /**
+     * Number of times a worker (or the batch thread, waiting for the ui thread) was found stuck for longer
+     * than the stall threshold, see {@link BatchWorker#setStallThreshold(long)}.
+     */
+    public int getStallCount() {
+        return stallCount;
+    }
+
+    /**
+     * Number of data items that took the outcome of the task of another data item with the same key, in
+     * this batch or in another one, see {@link BatchWorker#setDeduplication(KeyExtractor, InFlightRegistry)}.
+     */
+    public int getDeduplicatedItemCount() {
+        return deduplicatedItemCount;
+    }
+
+    /**
+     * Time the batch spent in the queue of its {@link BatchWorkerEngine} before it started.
+     */
+    public long getQueueWaitNanos() {
+        return queueWaitNanos;
+    }
+
+    /**
+     * Duration of the short and the long preWork, including showing the dialog.
+     */
+    public long getPreWorkNanos() {
+        return preWorkNanos;
+    }
+
+    /**
+     * Duration of the phase running the tasks of the data items.
+     */
+    public long getTaskPhaseNanos() {
+        return taskPhaseNanos;
+    }
+
+    /**
+     * Duration of the long and the short postWork, including dismissing the dialog.
+     */
+    public long getPostWorkNanos() {
+        return postWorkNanos;
+    }
+
+    /**
+     * Time the batch thread spent blocked, waiting for the main looper to run ui work.
+     */
+    public long getUiBlockedNanos() {
+        return uiBlockedNanos;
+    }
+
+    /**
+     * Time the tasks spent waiting for the {@link RateLimiter}, summed over all the workers.
+     */
+    public long getRateLimitWaitNanos() {
+        return rateLimitWaitNanos;
+    }
+
+    /**
+     * Time the tasks spent waiting for the per-key concurrency limit, summed over all the workers.
+     */
+    public long getKeyConcurrencyWaitNanos() {
+        return keyConcurrencyWaitNanos;
+    }
+
+    /**
+     * Median duration of the task of a data item.
+     */
+    public long getItemLatencyP50Nanos() {
+        return itemLatencyP50Nanos;
+    }
+
+    /**
+     * 95th percentile of the duration of the task of a data item.
+     */
+    public long getItemLatencyP95Nanos() {
+        return itemLatencyP95Nanos;
+    }
+
+    /**
+     * 99th percentile of the duration of the task of a data item.
+     */
+    public long getItemLatencyP99Nanos() {
+        return itemLatencyP99Nanos;
+    }
+
+    /**
+     * Highest number of tasks that were running at the same time. This is the achieved concurrency,
+     * see {@link #getMaxQueueDepth()} for the work waiting to run.
+     */
+    public int getMaxInFlightTasks() {
+        return maxInFlightTasks;
+    }
+
+    /**
+     * Highest number of workers waiting in the queue of the executor for a thread, sampled whenever a
+     * worker of the batch starts running. The executor of an engine is shared, so this includes the
+     * workers of the other batches. Always 0 with an executor that is not a
+     * {@link java.util.concurrent.ThreadPoolExecutor}, whose queue cannot be inspected.
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * Completed data items per second during the task phase.
+     */
+    public double getThroughput() {
+        return taskPhaseNanos > 0 ? completedItemCount * 1e9 / taskPhaseNanos : 0;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(
+            Locale.US,
+            "BatchStats{completed=%s, items=%d, failed=%d, retries=%d, cacheHitRatio=%.2f, deadlineMisses=%d, timedOut=%s, timeouts=%d, stalls=%d, deduplicated=%d, throughput=%.1f/s, queueWait=%.1fms, preWork=%.1fms, " +
+                "tasks=%.1fms, postWork=%.1fms, uiBlocked=%.1fms, rateLimitWait=%.1fms, keyConcurrencyWait=%.1fms, p50=%.3fms, p95=%.3fms, p99=%.3fms, maxInFlight=%d, maxQueueDepth=%d}",
+            completed,
+            completedItemCount,
+            failedItemCount,
+            retryCount,
+            getCacheHitRatio(),
+            deadlineMissCount,
+            timedOut,
+            timedOutTaskCount,
+            stallCount,
+            deduplicatedItemCount,
+            getThroughput(),
+            queueWaitNanos / 1e6,
+            preWorkNanos / 1e6,
+            taskPhaseNanos / 1e6,
+            postWorkNanos / 1e6,
+            uiBlockedNanos / 1e6,
+            rateLimitWaitNanos / 1e6,
+            keyConcurrencyWaitNanos / 1e6,
+            itemLatencyP50Nanos / 1e6,
+            itemLatencyP95Nanos / 1e6,
+            itemLatencyP99Nanos / 1e6,
+            maxInFlightTasks,
+            maxQueueDepth
+        );
+    }
+}
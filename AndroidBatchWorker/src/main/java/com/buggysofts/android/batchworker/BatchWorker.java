@@ -9,25 +9,89 @@ import android.view.View;
 import android.widget.ProgressBar;
 import android.widget.TextView;
 
+import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.UiContext;
+import androidx.annotation.UiThread;
 import androidx.appcompat.app.AlertDialog;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
 
 import com.google.android.material.bottomsheet.BottomSheetDialog;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public class BatchWorker<T, V> {
+    private static final String TAG = "BatchWorker";
+
+    /**
+     * Chunk size that adapts to the measured duration of the chunks, see {@link #setChunkSize(int)}.
+     */
+    public static final int CHUNK_SIZE_ADAPTIVE = 0;
+
+    /**
+     * Default of {@link #setCancellationGracePeriod(long)}.
+     */
+    public static final long DEFAULT_CANCELLATION_GRACE_PERIOD_MILLIS = 2_000L;
+
+    // parallel workers re-queue themselves after this long, to share the executor fairly
+    private static final long WORKER_TIME_SLICE_NANOS = 50_000_000L;
+
+    // how often a cancelled batch checks whether its grace period has elapsed
+    private static final long QUIESCENCE_POLL_MILLIS = 20L;
+
+    // resolution of the progress bar of weighted data items
+    private static final int WEIGHTED_PROGRESS_MAX = 10_000;
+
+    // bounds of the period of the watchdog, a quarter of the shortest timeout or threshold it enforces
+    private static final long MIN_WATCHDOG_PERIOD_MILLIS = 10L;
+    private static final long MAX_WATCHDOG_PERIOD_MILLIS = 1_000L;
+
+    // how long a batch waits for the ui thread to run a callback, the ui is not responding past this
+    private static final long UI_WAIT_TIMEOUT_MILLIS = 5_000L;
+
+    // phases of the batch, as far as the ui is concerned
+    private static final int UI_PHASE_IDLE = 0;
+    private static final int UI_PHASE_PRE_WORK = 1;
+    private static final int UI_PHASE_TASKS = 2;
+    private static final int UI_PHASE_POST_WORK = 3;
+    private static final int UI_PHASE_FINISHED = 4;
+
+    // kinds of the work watched by the watchdog
+    private static final int WATCHED_TASK = 0;
+    private static final int WATCHED_UI_WAIT = 1;
+
     // constructor passed components
-    private final Context context;
+    private Context context;
     private final List<T> dataItems;
     private final WorkerCallBack<T, V> workerCallBack;
+    private final boolean headless;
 
     // ui mode helpers
     private DialogMode dialogMode;
+    private CharSequence dialogTitle;
     private UiComponentsSelector uiComponentsSelector;
 
     // dialog refs
@@ -39,8 +103,77 @@ public class BatchWorker<T, V> {
     private TextView progressDescriptionView;
     private TextView tasksCancellationButton;
 
+    // execution config
+    private int parallelism = 1;
+    private Executor executor;
+    private BatchWorkerEngine engine;
+    private int chunkSize = CHUNK_SIZE_ADAPTIVE;
+    private boolean retainResults = true;
+    private ResultConsumer<V> resultConsumer;
+    private boolean orderedResultConsumption;
+    private ResultStream<V> resultStream;
+    private final ProgressStream progressStream = new ProgressStream();
+
+    private boolean interruptOnCancel = true;
+    private BatchMetricsListener metricsListener;
+    private boolean traceEnabled;
+    private RetryPolicy retryPolicy;
+    private ErrorMode errorMode = ErrorMode.FAIL_FAST;
+    private ItemFailureListener itemFailureListener;
+    private CheckpointStore checkpointStore;
+    private ResultSerializer<V> resultSerializer;
+    private KeyExtractor<T, Object> cacheKeyExtractor;
+    private ResultCache<Object, V> resultCache;
+    private KeyExtractor<T, Object> dedupKeyExtractor;
+    private InFlightRegistry<Object, V> inFlightRegistry;
+    private SchedulingPolicy<T> schedulingPolicy;
+    private ItemWeigher<T> itemWeigher;
+    private boolean heaviestFirst;
+    private ProgressListener progressListener;
+    private ProgressFormat progressFormat = ProgressFormat.DESCRIPTOR;
+    private boolean adaptiveConcurrency;
+    private Context deviceStateContext;
+    private Pipeline<T, V> pipeline;
+    private RateLimiter rateLimiter;
+    private KeyExtractor<T, Object> limitKeyExtractor;
+    private KeyConcurrencyLimiter keyConcurrencyLimiter;
+    private long cancellationGracePeriodMillis = DEFAULT_CANCELLATION_GRACE_PERIOD_MILLIS;
+    private long taskTimeoutMillis;
+    private TimeoutAction taskTimeoutAction = TimeoutAction.FAIL;
+    private long batchTimeoutMillis;
+    private long stallThresholdMillis;
+
     // control vars
-    private boolean cancelOperations;
+    private final CancellationToken cancellationToken = new CancellationToken();
+    private final Set<Thread> interruptibleThreads = new HashSet<>();
+    private final Set<WatchedWork> watchedWorks = new HashSet<>();
+    private final AtomicBoolean shortPostWorkDelivered = new AtomicBoolean(false);
+    private final List<ItemFailure> failures = new ArrayList<>(0);
+    private volatile PriorityScheduler<T> activeScheduler;
+    private volatile ProgressPublisher<TaskDescriptors> progressPublisher;
+
+    // ui attachment - ui updates are dropped while detached
+    private final Handler mainHandler;
+    private volatile boolean uiAttached;
+    private volatile int uiPhase = UI_PHASE_IDLE;
+    private volatile int uiProgressMax = DataSource.SIZE_UNKNOWN;
+    private LifecycleOwner lifecycleOwner;
+    private LifecycleEventObserver lifecycleObserver;
+
+    // lazily shown built-in dialog
+    private long showDelayMillis;
+    private boolean shortPreWorkDone;
+    private volatile boolean dialogShowDue;
+    private final Runnable dialogShower = new Runnable() {
+        @Override
+        public void run() {
+            dialogShowDue = true;
+            int phase = uiPhase;
+            if (uiAttached && phase != UI_PHASE_IDLE && phase != UI_PHASE_FINISHED) {
+                showDialog();
+            }
+        }
+    };
 
     /**
      * Construct a batch worker that will execute the defined task on all the items of the input data list with a built-in dialog window.
@@ -56,11 +189,107 @@ public class BatchWorker<T, V> {
                        @NonNull List<T> dataItems,
                        @NonNull DialogMode dialogMode,
                        @NonNull WorkerCallBack<T, V> workerCallBack) {
+        this(context, dataItems, workerCallBack);
+        this.dialogMode = dialogMode;
+        this.dialogTitle = dialogTitleView;
+    }
+
+    /**
+     * Construct a batch worker that will execute the defined task on all the items pulled from the input data source with a built-in dialog window.
+     * Data items are pulled lazily as the tasks need them, and are dropped once their task is done.
+     *
+     * @param context         the context in which the window will appear.
+     * @param dialogTitleView optional title of the dialog.
+     * @param dataSource      the source of the data items that the we will work upon.
+     * @param dialogMode      mode of the dialog, either {@link DialogMode#MODE_CLASSIC} (for using classic {@link AlertDialog} style dialog) or {@link DialogMode#MODE_BOTTOM_SHEET} (for using a {@link BottomSheetDialog} style dialog).
+     * @param workerCallBack  callback interface for defining the task for each data item, and more.
+     */
+    public BatchWorker(@NonNull @UiContext Context context,
+                       @Nullable CharSequence dialogTitleView,
+                       @NonNull DataSource<T> dataSource,
+                       @NonNull DialogMode dialogMode,
+                       @NonNull WorkerCallBack<T, V> workerCallBack) {
+        this(context, new StreamingDataList<>(dataSource), workerCallBack);
+        this.dialogMode = dialogMode;
+        this.dialogTitle = dialogTitleView;
+    }
+
+    /**
+     * Construct a batch worker that will execute the defined task on all the items of the input data list with a built-in dialog window.
+     *
+     * @param context              the context in which the window will appear.
+     * @param dataItems            the actual data items that the we will work upon.
+     * @param uiComponentsSelector container to hold external view resource ids required for publishing progress info of the tasks.
+     * @param workerCallBack       callback interface for defining the task for each data item, and more.
+     */
+    public BatchWorker(@NonNull @UiContext Context context,
+                       @NonNull List<T> dataItems,
+                       @NonNull UiComponentsSelector uiComponentsSelector,
+                       @NonNull WorkerCallBack<T, V> workerCallBack) {
+        this(context, dataItems, workerCallBack);
+        this.uiComponentsSelector = uiComponentsSelector;
+        initExternalUi();
+    }
+
+    /**
+     * Construct a batch worker that will execute the defined task on all the items pulled from the input data source, publishing progress info on external views.
+     * Data items are pulled lazily as the tasks need them, and are dropped once their task is done.
+     *
+     * @param context              the context in which the window will appear.
+     * @param dataSource           the source of the data items that the we will work upon.
+     * @param uiComponentsSelector container to hold external view resource ids required for publishing progress info of the tasks.
+     * @param workerCallBack       callback interface for defining the task for each data item, and more.
+     */
+    public BatchWorker(@NonNull @UiContext Context context,
+                       @NonNull DataSource<T> dataSource,
+                       @NonNull UiComponentsSelector uiComponentsSelector,
+                       @NonNull WorkerCallBack<T, V> workerCallBack) {
+        this(context, new StreamingDataList<>(dataSource), workerCallBack);
+        this.uiComponentsSelector = uiComponentsSelector;
+        initExternalUi();
+    }
+
+    /**
+     * Construct a headless batch worker that will execute the defined task on all the items of the input data list without any ui.
+     * Nothing is posted to the main thread: the short preWork and postWork run on the batch thread, and the progress is only
+     * reported to the {@link ProgressListener}, if one is set.
+     *
+     * @param dataItems      the actual data items that the we will work upon.
+     * @param workerCallBack callback interface for defining the task for each data item, and more. The descriptors are not used.
+     */
+    public BatchWorker(@NonNull List<T> dataItems,
+                       @NonNull WorkerCallBack<T, V> workerCallBack) {
+        this(null, dataItems, workerCallBack);
+    }
+
+    /**
+     * Construct a headless batch worker that will execute the defined task on all the items pulled from the input data source without any ui.
+     * Nothing is posted to the main thread: the short preWork and postWork run on the batch thread, and the progress is only
+     * reported to the {@link ProgressListener}, if one is set.
+     *
+     * @param dataSource     the source of the data items that the we will work upon.
+     * @param workerCallBack callback interface for defining the task for each data item, and more. The descriptors are not used.
+     */
+    public BatchWorker(@NonNull DataSource<T> dataSource,
+                       @NonNull WorkerCallBack<T, V> workerCallBack) {
+        this(null, new StreamingDataList<>(dataSource), workerCallBack);
+    }
+
+    private BatchWorker(@Nullable Context context,
+                        @NonNull List<T> dataItems,
+                        @NonNull WorkerCallBack<T, V> workerCallBack) {
         this.context = context;
         this.dataItems = dataItems;
-        this.dialogMode = dialogMode;
         this.workerCallBack = workerCallBack;
+        this.headless = context == null;
+        this.mainHandler = headless ? null : new Handler(Looper.getMainLooper());
+        this.uiAttached = !headless;
+    }
 
+    /**
+     * Create the built-in dialog of the current {@link DialogMode}. Its views are looked up when it is shown.
+     */
+    private void createDialog() {
         if (dialogMode == DialogMode.MODE_CLASSIC) {
             classicDialog =
                 new AlertDialog.Builder(context)
@@ -82,8 +311,8 @@ public class BatchWorker<T, V> {
                         tasksCancellationButton = activeDialog.findViewById(dialogMode.getCancelBtnResId());
 
                         // init properties
-                        if (dialogTitleView != null) {
-                            BatchWorker.this.dialogTitleView.setText(dialogTitleView);
+                        if (dialogTitle != null) {
+                            BatchWorker.this.dialogTitleView.setText(dialogTitle);
                             BatchWorker.this.dialogTitleView.setVisibility(View.VISIBLE);
                         } else {
                             BatchWorker.this.dialogTitleView.setVisibility(View.GONE);
@@ -97,21 +326,19 @@ public class BatchWorker<T, V> {
                             new View.OnClickListener() {
                                 @Override
                                 public void onClick(View v) {
-                                    // mark cancellation
-                                    cancelOperations = true;
+                                    // mark cancellation & interrupt the running tasks
+                                    cancel();
 
                                     // dismiss dialog on operation cancellation
-                                    classicDialog.dismiss();
+                                    dismissDialog();
 
-                                    // perform post
-                                    // do the specified short postWork
-                                    workerCallBack.onShortPostWork(
-                                        new ArrayList<>(0),
-                                        false
-                                    );
+                                    // the short postWork will run when the running tasks have stopped
                                 }
                             }
                         );
+
+                        // a re-attached dialog catches up with the batch
+                        applyUiState();
                     }
                 }
             );
@@ -133,8 +360,8 @@ public class BatchWorker<T, V> {
                         tasksCancellationButton = activeDialog.findViewById(dialogMode.getCancelBtnResId());
 
                         // init properties
-                        if (dialogTitleView != null) {
-                            BatchWorker.this.dialogTitleView.setText(dialogTitleView);
+                        if (dialogTitle != null) {
+                            BatchWorker.this.dialogTitleView.setText(dialogTitle);
                             BatchWorker.this.dialogTitleView.setVisibility(View.VISIBLE);
                         } else {
                             BatchWorker.this.dialogTitleView.setVisibility(View.GONE);
@@ -148,21 +375,19 @@ public class BatchWorker<T, V> {
                             new View.OnClickListener() {
                                 @Override
                                 public void onClick(View v) {
-                                    // mark cancellation
-                                    cancelOperations = true;
+                                    // mark cancellation & interrupt the running tasks
+                                    cancel();
 
                                     // dismiss dialog on operation cancellation
-                                    bottomSheetDialog.dismiss();
+                                    dismissDialog();
 
-                                    // perform post
-                                    // do the specified short postWork
-                                    workerCallBack.onShortPostWork(
-                                        new ArrayList<>(0),
-                                        false
-                                    );
+                                    // the short postWork will run when the running tasks have stopped
                                 }
                             }
                         );
+
+                        // a re-attached dialog catches up with the batch
+                        applyUiState();
                     }
                 }
             );
@@ -170,22 +395,9 @@ public class BatchWorker<T, V> {
     }
 
     /**
-     * Construct a batch worker that will execute the defined task on all the items of the input data list with a built-in dialog window.
-     *
-     * @param context              the context in which the window will appear.
-     * @param dataItems            the actual data items that the we will work upon.
-     * @param uiComponentsSelector container to hold external view resource ids required for publishing progress info of the tasks.
-     * @param workerCallBack       callback interface for defining the task for each data item, and more.
+     * Find and initialize the external views of the {@link UiComponentsSelector}.
      */
-    public BatchWorker(@NonNull @UiContext Context context,
-                       @NonNull List<T> dataItems,
-                       @NonNull UiComponentsSelector uiComponentsSelector,
-                       @NonNull WorkerCallBack<T, V> workerCallBack) {
-        this.context = context;
-        this.dataItems = dataItems;
-        this.uiComponentsSelector = uiComponentsSelector;
-        this.workerCallBack = workerCallBack;
-
+    private void initExternalUi() {
         // init refs
         View parent = uiComponentsSelector.getParentView();
         this.dialogTitleView = parent.findViewById(uiComponentsSelector.getTitleResId());
@@ -204,216 +416,2444 @@ public class BatchWorker<T, V> {
             new View.OnClickListener() {
                 @Override
                 public void onClick(View v) {
-                    // mark cancellation
-                    cancelOperations = true;
+                    // mark cancellation & interrupt the running tasks
+                    cancel();
 
                     // dismiss dialog on operation cancellation
                     // nothing to dismiss
 
-                    // perform post
-                    // do the specified short postWork
-                    workerCallBack.onShortPostWork(
-                        new ArrayList<>(0),
-                        false
-                    );
+                    // the short postWork will run when the running tasks have stopped
                 }
             }
         );
     }
 
     /**
-     * Start the batch task.
+     * Show the built-in dialog, if there is one, creating it first if needed.
      */
-    public void start() {
-        new Thread(
-            new Runnable() {
-                /**
-                 * Runs the specified runnable in the specified looper while locking/awaiting
-                 * the calling thread.
-                 * */
-                private void runLocked(Looper looper, Runnable runnable) {
-                    CountDownLatch latch = new CountDownLatch(1);
-                    new Handler(looper).post(
-                        new Runnable() {
-                            @Override
-                            public void run() {
-                                // run specified task
-                                runnable.run();
+    private void showDialog() {
+        if (dialogMode == null || context == null) {
+            return;
+        }
+        if (classicDialog == null && bottomSheetDialog == null) {
+            createDialog();
+        }
+        if (classicDialog != null) {
+            classicDialog.show();
+        } else if (bottomSheetDialog != null) {
+            bottomSheetDialog.show();
+        }
+    }
 
-                                // exit thread lock
-                                latch.countDown();
-                            }
-                        }
-                    );
-                    try {
-                        latch.await();
-                    } catch (InterruptedException e) {
-                        e.printStackTrace();
-                    } finally {
-                        // exit
-                    }
-                }
+    /**
+     * Dismiss the built-in dialog, if there is one.
+     */
+    private void dismissDialog() {
+        if (classicDialog != null) {
+            classicDialog.dismiss();
+        } else if (bottomSheetDialog != null) {
+            bottomSheetDialog.dismiss();
+        }
+    }
+
+    /**
+     * Bring freshly attached views up to date with the current phase of the batch.
+     */
+    @UiThread
+    private void applyUiState() {
+        if (!uiAttached || progressBar == null) {
+            return;
+        }
+        int phase = uiPhase;
+        if (phase == UI_PHASE_TASKS) {
+            if (uiProgressMax != DataSource.SIZE_UNKNOWN) {
+                progressBar.setIndeterminate(false);
+                progressBar.setMax(uiProgressMax);
+            }
+            ProgressPublisher<TaskDescriptors> activePublisher = progressPublisher;
+            if (activePublisher != null) {
+                activePublisher.invalidate();
+            }
+        } else if (phase == UI_PHASE_POST_WORK) {
+            subjectDescriptionView.setText(workerCallBack.longPostWorkDescriptor());
+        }
+    }
 
+    /**
+     * Post an update of the views to the ui thread, without waiting for it. The update is dropped
+     * if the ui is detached by the time it runs, or the dialog is not shown yet.
+     */
+    private void postUiUpdate(@NonNull Runnable update) {
+        if (headless) {
+            return;
+        }
+        mainHandler.post(
+            new Runnable() {
                 @Override
                 public void run() {
-                    // create a results holder
-                    List<V> results = new ArrayList<>(0);
-
-                    // run short preWork on ui thread - block the enclosing thread.
-                    // the short preWork will be run prior to opening the dialog.
-                    runLocked(
-                        Looper.getMainLooper(),
-                        new Runnable() {
-                            @Override
-                            public void run() {
-                                // do the specified short preWork
-                                workerCallBack.onShortPreWork();
+                    // a dialog shown later catches up by itself
+                    if (uiAttached && progressBar != null) {
+                        update.run();
+                    }
+                }
+            }
+        );
+    }
 
-                                // show dialog
-                                if (uiComponentsSelector == null) {
-                                    if (dialogMode == DialogMode.MODE_CLASSIC) {
-                                        classicDialog.show();
-                                    } else {
-                                        bottomSheetDialog.show();
-                                    }
-                                } else {
-                                    // external ui
-                                }
-                            }
-                        }
-                    );
+    /**
+     * Run the short preWork, and schedule showing the dialog without waiting for it, so that the long
+     * preWork starts while the dialog is laid out.
+     */
+    @UiThread
+    private void beginUi() {
+        // do the specified short preWork
+        workerCallBack.onShortPreWork();
 
-                    // run long preWork on the enclosing thread.
-                    // it will run right after the dialog is opened.
-                    // progress bar will be in indeterminate state.
-                    workerCallBack.onLongPreWork(dataItems);
+        uiPhase = UI_PHASE_PRE_WORK;
+        if (dialogMode != null) {
+            if (showDelayMillis > 0) {
+                mainHandler.postDelayed(dialogShower, showDelayMillis);
+            } else {
+                mainHandler.post(dialogShower);
+            }
+        }
+    }
 
-                    // update progress bar properties.
-                    // set max, make non-indeterminate etc.
-                    // will run on ui thread.
-                    runLocked(
-                        Looper.getMainLooper(),
-                        new Runnable() {
-                            @Override
-                            public void run() {
-                                progressBar.setIndeterminate(false);
-                                progressBar.setMax(dataItems.size());
-                            }
-                        }
-                    );
+    /**
+     * Perform the tasks of the data items in parallel, using the given number of workers.
+     * The results are still delivered to {@link WorkerCallBack#onLongPostWork(List)} and
+     * {@link WorkerCallBack#onShortPostWork(List, boolean)} in the order of the input data list.
+     * <br>
+     * Unless an {@link Executor} is supplied by {@link #setExecutor(Executor)}, the tasks run on the
+     * worker pool of the {@link BatchWorkerEngine} of this batch worker.
+     *
+     * @param parallelism number of data items to work upon concurrently, 1 (the default) means sequential execution.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
 
-                    // when the preWorks are done, run the main tasks
-                    for (int i = 0; !cancelOperations && (i < dataItems.size()); ++i) {
-                        int finalI = i;
+    /**
+     * Tune the number of parallel workers while the batch runs, by measuring the throughput and the
+     * latency of the tasks. The number of workers is bounded by the parallelism if it was raised by
+     * {@link #setParallelism(int)}, by the available processors or the pool of the engine otherwise.
+     * It is lowered under thermal pressure (API 29+) and in battery saver mode.
+     *
+     * @param adaptiveConcurrency whether to tune the number of workers.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setAdaptiveConcurrency(boolean adaptiveConcurrency) {
+        return setAdaptiveConcurrency(adaptiveConcurrency, context);
+    }
 
-                        // update current task label descriptor
-                        runLocked(
-                            Looper.getMainLooper(),
-                            new Runnable() {
-                                @Override
-                                public void run() {
-                                    // update label & progress descriptor to specified value
-                                    subjectDescriptionView.setText(
-                                        workerCallBack.taskLabelDescriptor(
-                                            dataItems,
-                                            finalI
-                                        )
-                                    );
-                                    progressDescriptionView.setText(
-                                        workerCallBack.taskProgressDescriptor(
-                                            dataItems,
-                                            finalI
-                                        )
-                                    );
-                                }
-                            }
-                        );
+    /**
+     * Same as {@link #setAdaptiveConcurrency(boolean)}, observing the device state with the given
+     * context, e.g. for a headless batch.
+     *
+     * @param adaptiveConcurrency whether to tune the number of workers.
+     * @param context             context to observe the device state with, or null to ignore the device state.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setAdaptiveConcurrency(boolean adaptiveConcurrency, @Nullable Context context) {
+        this.adaptiveConcurrency = adaptiveConcurrency;
+        // the batch may outlive an activity context, see detach()
+        this.deviceStateContext = context != null ?
+            context.getApplicationContext() :
+            null;
+        return this;
+    }
 
-                        // do the task in this enclosing thread
-                        results.add(workerCallBack.performTask(dataItems, i));
+    /**
+     * Perform the tasks of the data items in parallel on the given executor.
+     * If the parallelism was not raised by {@link #setParallelism(int)}, the number of workers
+     * submitted to the executor will be the number of available processors.
+     * <br>
+     * The executor is not shut down by the batch worker.
+     *
+     * @param executor the executor to run the tasks on, or null to use a pool owned by the batch.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setExecutor(@Nullable Executor executor) {
+        this.executor = executor;
+        return this;
+    }
 
-                        // update progress bar
-                        runLocked(
-                            Looper.getMainLooper(),
-                            new Runnable() {
-                                @Override
-                                public void run() {
-                                    // update progress descriptor to specified value
-                                    progressDescriptionView.setText(
-                                        workerCallBack.taskProgressDescriptor(
-                                            dataItems,
-                                            finalI
-                                        )
-                                    );
+    /**
+     * Set the number of data items handed to {@link BatchedWorkerCallBack#performChunk(List, int, int)} at once.
+     * Has no effect if the callback is not a {@link BatchedWorkerCallBack}.
+     *
+     * @param chunkSize number of data items per chunk, or {@link #CHUNK_SIZE_ADAPTIVE} (the default) to adapt
+     *                  the size to the measured duration of the chunks.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setChunkSize(int chunkSize) {
+        if (chunkSize < 1 && chunkSize != CHUNK_SIZE_ADAPTIVE) {
+            throw new IllegalArgumentException("chunkSize must be at least 1, or CHUNK_SIZE_ADAPTIVE");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
 
-                                    // update progress bar to the last completed task index
-                                    if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
-                                        progressBar.setProgress(
-                                            finalI + 1,
-                                            true
-                                        );
-                                    } else {
-                                        progressBar.setProgress(finalI + 1);
-                                    }
-                                }
-                            }
-                        );
-                    }
+    /**
+     * Hand the result of each task to the given consumer as soon as it is produced, instead of
+     * (or in addition to) collecting all of them for the post-work callbacks.
+     *
+     * @param resultConsumer the consumer of the results, or null to remove it.
+     * @param ordered        whether the results must be consumed in input order. In parallel mode,
+     *                       results that complete early are then held back until the ones before them are consumed.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setResultConsumer(@Nullable ResultConsumer<V> resultConsumer, boolean ordered) {
+        this.resultConsumer = resultConsumer;
+        this.orderedResultConsumption = ordered;
+        return this;
+    }
 
-                    if (!cancelOperations) {
-                        // update progress bar properties - set indeterminate
-                        // will be done in ui thread
-                        runLocked(
-                            Looper.getMainLooper(),
-                            new Runnable() {
-                                @Override
-                                public void run() {
-                                    progressBar.setIndeterminate(true);
-                                    progressDescriptionView.setText(R.string.three_dots_);
-                                    subjectDescriptionView.setText(workerCallBack.longPostWorkDescriptor());
-                                }
-                            }
-                        );
+    /**
+     * Stream the result of each task to an observer on its own executor, so that a slow observer does not
+     * hold up the worker threads, unless its {@link BackpressurePolicy} says so.
+     *
+     * @param resultStream the stream of the results, or null to remove it.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setResultStream(@Nullable ResultStream<V> resultStream) {
+        this.resultStream = resultStream;
+        return this;
+    }
 
-                        // run long postWork in the enclosing thread.
-                        // it will run right after the actual batch tasks are completed.
-                        // progress bar will be in indeterminate state.
-                        workerCallBack.onLongPostWork(results);
+    /**
+     * The conflated stream of the progress of the batch, to observe it from anywhere, e.g. a
+     * composable or a service, without the progress being pushed to the ui thread for each task.
+     */
+    @NonNull
+    public ProgressStream getProgressStream() {
+        return progressStream;
+    }
 
-                        // run short preWork on ui thread - block the enclosing thread
-                        // the short preWork will run after all the other calls of this callback
-                        // has finished & the dialog is closed.
-                        runLocked(
-                            Looper.getMainLooper(),
-                            new Runnable() {
-                                @Override
-                                public void run() {
-                                    // show dialog
-                                    if (uiComponentsSelector == null) {
-                                        if (dialogMode == DialogMode.MODE_CLASSIC) {
-                                            classicDialog.dismiss();
-                                        } else {
-                                            bottomSheetDialog.dismiss();
-                                        }
-                                    } else {
-                                        // external ui
-                                    }
+    /**
+     * Whether to keep all the results in memory for {@link WorkerCallBack#onLongPostWork(List)} and
+     * {@link WorkerCallBack#onShortPostWork(List, boolean)}. If not, these callbacks receive an empty list,
+     * and a {@link ResultConsumer} is the only way to get the results - memory then stays bounded
+     * regardless of the batch size.
+     *
+     * @param retainResults true (the default) to keep the results, false to retain nothing.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setRetainResults(boolean retainResults) {
+        this.retainResults = retainResults;
+        return this;
+    }
 
-                                    // perform post
-                                    // do the specified short postWork
+    /**
+     * Receive the statistics of the batch (phase durations, task latency percentiles, throughput etc.)
+     * when it is over.
+     *
+     * @param metricsListener the listener, or null to remove it.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setMetricsListener(@Nullable BatchMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+        return this;
+    }
+
+    /**
+     * Whether to emit the phases of the batch and the tasks as {@link android.os.Trace} sections,
+     * for inspection in system traces (e.g. Perfetto).
+     *
+     * @param traceEnabled true to emit trace sections, false (the default) otherwise.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setTraceEnabled(boolean traceEnabled) {
+        this.traceEnabled = traceEnabled;
+        return this;
+    }
+
+    /**
+     * Retry failed tasks as the given policy allows. Chunks of a {@link BatchedWorkerCallBack} are
+     * retried as a whole.
+     *
+     * @param retryPolicy the policy, or null (the default) to never retry.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setRetryPolicy(@Nullable RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+        return this;
+    }
+
+    /**
+     * Set what the batch does when a task fails after its retries.
+     *
+     * @param errorMode {@link ErrorMode#FAIL_FAST} (the default) to stop the batch, or
+     *                  {@link ErrorMode#COLLECT} to report the failure and continue.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setErrorMode(@NonNull ErrorMode errorMode) {
+        this.errorMode = errorMode;
+        return this;
+    }
+
+    /**
+     * Receive the failures of the batch as they happen.
+     *
+     * @param itemFailureListener the listener, or null to remove it.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setItemFailureListener(@Nullable ItemFailureListener itemFailureListener) {
+        this.itemFailureListener = itemFailureListener;
+        return this;
+    }
+
+    /**
+     * Persist the result of each completed data item, so that the batch can be resumed after a
+     * process death. When started, the batch restores the results found in the store, and skips their
+     * data items. The store is cleared when the batch completes.
+     * <br>
+     * Data items are identified by their index, so a resumed batch must have the same input data in
+     * the same order. Restored results are handed to the {@link ResultConsumer} again.
+     *
+     * @param checkpointStore  the store, e.g. a {@link FileCheckpointStore}, or null to disable checkpointing.
+     * @param resultSerializer converts the results to bytes and back.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setCheckpointStore(@Nullable CheckpointStore checkpointStore,
+                                                @Nullable ResultSerializer<V> resultSerializer) {
+        if ((checkpointStore == null) != (resultSerializer == null)) {
+            throw new IllegalArgumentException("checkpointStore and resultSerializer must be set together");
+        }
+        this.checkpointStore = checkpointStore;
+        this.resultSerializer = resultSerializer;
+        return this;
+    }
+
+    /**
+     * Limit the rate of the tasks, e.g. for a rate limited service. Each attempt of a task takes a permit,
+     * a chunk of a {@link BatchedWorkerCallBack} takes one per data item, and a {@link Pipeline} one per
+     * attempt of each stage. The time spent waiting for
+     * permits is reported by {@link BatchStats#getRateLimitWaitNanos()}.
+     *
+     * @param rateLimiter the limiter, which may be shared among batches, or null to remove it.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setRateLimiter(@Nullable RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+        return this;
+    }
+
+    /**
+     * Limit the number of tasks running at the same time per key of their data item, e.g. at most 2 tasks
+     * per host or per storage volume. The time spent waiting is reported by
+     * {@link BatchStats#getKeyConcurrencyWaitNanos()}.
+     * <br>
+     * Does not apply to the chunks of a {@link BatchedWorkerCallBack}, whose data items may have different keys.
+     * In a {@link Pipeline}, each stage is limited on its own.
+     *
+     * @param keyExtractor        extracts the keys of the data items, or null to remove the limit.
+     * @param maxConcurrentPerKey maximum number of running tasks per key.
+     * @return this batch worker, for chaining.
+     */
+    @SuppressWarnings("unchecked")
+    public <K> BatchWorker<T, V> setKeyConcurrencyLimit(@Nullable KeyExtractor<T, K> keyExtractor,
+                                                        int maxConcurrentPerKey) {
+        if (maxConcurrentPerKey < 1) {
+            throw new IllegalArgumentException("maxConcurrentPerKey must be at least 1");
+        }
+        this.limitKeyExtractor = (KeyExtractor<T, Object>) keyExtractor;
+        this.keyConcurrencyLimiter = keyExtractor != null ?
+            new KeyConcurrencyLimiter(maxConcurrentPerKey) :
+            null;
+        return this;
+    }
+
+    /**
+     * Memoize the results of the tasks by the key of their data item. A data item whose key has a
+     * cached result completes with that result, without performing its task; other results are put
+     * in the cache as their tasks complete. Failed tasks and null results are not cached.
+     * <br>
+     * For a {@link BatchedWorkerCallBack}, a chunk is skipped only if all of its data items have
+     * cached results.
+     *
+     * @param keyExtractor extracts the keys of the data items.
+     * @param resultCache  the cache, e.g. a {@link LruResultCache}, which may be shared among batches.
+     * @return this batch worker, for chaining.
+     */
+    @SuppressWarnings("unchecked")
+    public <K> BatchWorker<T, V> setResultCache(@Nullable KeyExtractor<T, K> keyExtractor,
+                                                @Nullable ResultCache<K, V> resultCache) {
+        if ((keyExtractor == null) != (resultCache == null)) {
+            throw new IllegalArgumentException("keyExtractor and resultCache must be set together");
+        }
+        this.cacheKeyExtractor = (KeyExtractor<T, Object>) keyExtractor;
+        this.resultCache = (ResultCache<Object, V>) resultCache;
+        return this;
+    }
+
+    /**
+     * Perform the task of each distinct key only once. Data items of the batch with the same key as an
+     * earlier one complete with its result (or its failure). With a registry, a data item whose key is
+     * being performed by another batch using the same registry waits for that result instead; if the
+     * other batch is cancelled, the task is performed here after all.
+     * <br>
+     * Applies to the tasks performed per data item. Chunks of a {@link BatchedWorkerCallBack} and
+     * {@link Pipeline}s are not deduplicated, and neither are the data items of a streaming data
+     * source within the batch, as their keys are not known in advance.
+     *
+     * @param keyExtractor extracts the keys of the data items, or null to not deduplicate.
+     * @param registry     the registry of the running tasks, shared with the other batches, or null to
+     *                     only deduplicate within the batch.
+     * @return this batch worker, for chaining.
+     */
+    @SuppressWarnings("unchecked")
+    public <K> BatchWorker<T, V> setDeduplication(@Nullable KeyExtractor<T, K> keyExtractor,
+                                                  @Nullable InFlightRegistry<K, V> registry) {
+        if (keyExtractor == null && registry != null) {
+            throw new IllegalArgumentException("registry requires a keyExtractor");
+        }
+        this.dedupKeyExtractor = (KeyExtractor<T, Object>) keyExtractor;
+        this.inFlightRegistry = (InFlightRegistry<Object, V>) registry;
+        return this;
+    }
+
+    /**
+     * Process the data items in the order of the given policy instead of the input order, e.g. the
+     * items visible on screen first. In parallel mode, each worker takes a few of the highest priority
+     * items at a time, and steals from the other workers when none are left.
+     * <br>
+     * Requires a list of data items, not a {@link DataSource}. A {@link BatchedWorkerCallBack} is handed
+     * chunks of a single data item, as the scheduled items are not consecutive.
+     *
+     * @param schedulingPolicy the policy, or null to process the data items in input order.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setSchedulingPolicy(@Nullable SchedulingPolicy<T> schedulingPolicy) {
+        if (schedulingPolicy != null && dataItems instanceof StreamingDataList) {
+            throw new IllegalStateException("A scheduling policy requires a list of data items");
+        }
+        this.schedulingPolicy = schedulingPolicy;
+        return this;
+    }
+
+    /**
+     * Weigh the data items by the cost of their tasks, e.g. by their size in bytes. The progress (and the
+     * remaining time) is then measured by weight instead of by count, so that a few heavy data items
+     * are not shown as a small part of the batch. Optionally, the heaviest data items are started first,
+     * which balances the load of parallel workers and shortens the batch.
+     * <br>
+     * Each data item is weighed once, on the batch thread, before the tasks start.
+     *
+     * @param itemWeigher   the weigher, or null to count each data item as one.
+     * @param heaviestFirst whether to perform the tasks in decreasing order of weight. With a
+     *                      {@link SchedulingPolicy}, weight only breaks the ties of the policy.
+     * @return this batch worker, for chaining.
+     * @throws IllegalStateException for a streaming data source, whose data items are not known in advance.
+     */
+    public BatchWorker<T, V> setItemWeigher(@Nullable ItemWeigher<T> itemWeigher, boolean heaviestFirst) {
+        if (itemWeigher != null && dataItems instanceof StreamingDataList) {
+            throw new IllegalStateException("Data items of a streaming data source cannot be weighed in advance");
+        }
+        this.itemWeigher = itemWeigher;
+        this.heaviestFirst = heaviestFirst;
+        return this;
+    }
+
+    /**
+     * Set how the progress description of the ui is produced. The built-in formats are written
+     * without allocating, and {@link WorkerCallBack#taskProgressDescriptor(List, int)} is not called.
+     *
+     * @param progressFormat the format, {@link ProgressFormat#DESCRIPTOR} by default.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setProgressFormat(@NonNull ProgressFormat progressFormat) {
+        this.progressFormat = progressFormat;
+        return this;
+    }
+
+    /**
+     * Receive the progress of the tasks on the threads running them, in addition to the progress
+     * rendered on the ui. This is the only progress report of a headless batch.
+     *
+     * @param progressListener the listener, or null to remove it.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setProgressListener(@Nullable ProgressListener progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    /**
+     * Perform the task of each data item as the stages of the given pipeline, instead of
+     * {@link WorkerCallBack#performTask(List, int)}. Each stage runs with its own parallelism on the
+     * executor of the batch, and the progress is published as the last stage completes the data items.
+     * <br>
+     * The parallelism, chunk size and adaptive concurrency settings do not apply to pipelines. Retries
+     * apply to each stage, and the rate limit and key concurrency limit to each stage on its own: every
+     * attempt of a stage takes a permit, and holds a slot of the key of its data item while it runs. The
+     * other settings, e.g. checkpoints, result caching and scheduling, apply to each data item.
+     * <br>
+     * The stages replace the tasks, including the one of a {@link CancellableWorkerCallBack}; stages
+     * can check {@link #getCancellationToken()} instead.
+     *
+     * @param pipeline the pipeline, or null to use {@link WorkerCallBack#performTask(List, int)}.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setPipeline(@Nullable Pipeline<T, V> pipeline) {
+        this.pipeline = pipeline;
+        return this;
+    }
+
+    /**
+     * Run the batch on the given engine instead of the default one.
+     * The engine decides how many batches may run at the same time, and owns the threads
+     * the batch and its parallel tasks run on.
+     *
+     * @param engine the engine to run the batch on, or null to use {@link BatchWorkerEngine#getDefault()}.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setEngine(@Nullable BatchWorkerEngine engine) {
+        this.engine = engine;
+        return this;
+    }
+
+    /**
+     * Whether to interrupt the threads of the running tasks when the batch is cancelled.
+     * Interruption lets blocking operations (sleeps, waits, interruptible I/O) of a task end right away.
+     *
+     * @param interruptOnCancel true (the default) to interrupt the running tasks on cancellation.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setInterruptOnCancel(boolean interruptOnCancel) {
+        this.interruptOnCancel = interruptOnCancel;
+        return this;
+    }
+
+    /**
+     * Set how long the batch waits for its running tasks to stop after a cancellation.
+     * Tasks that ignore the cancellation beyond this period are abandoned, and
+     * {@link WorkerCallBack#onShortPostWork(List, boolean)} is called without waiting for them.
+     *
+     * @param gracePeriodMillis grace period in milliseconds, {@link #DEFAULT_CANCELLATION_GRACE_PERIOD_MILLIS} by default.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setCancellationGracePeriod(long gracePeriodMillis) {
+        if (gracePeriodMillis < 0) {
+            throw new IllegalArgumentException("gracePeriodMillis must not be negative");
+        }
+        this.cancellationGracePeriodMillis = gracePeriodMillis;
+        return this;
+    }
+
+    /**
+     * Limit how long a single attempt at a task may run. A timed out attempt is interrupted, and whatever
+     * it returns or throws afterwards is replaced by a {@link TaskTimeoutException}, handled as the action says.
+     * <br>
+     * Interruption is the only way to stop a task, so a task that does not respond to it keeps its worker
+     * busy until it returns - use timeouts on the blocking calls of such tasks.
+     *
+     * @param timeoutMillis timeout in milliseconds, or 0 (the default) for no timeout.
+     * @param action        what happens to the data item of a timed out attempt.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setTaskTimeout(long timeoutMillis, @NonNull TimeoutAction action) {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("timeoutMillis must not be negative");
+        }
+        this.taskTimeoutMillis = timeoutMillis;
+        this.taskTimeoutAction = action;
+        return this;
+    }
+
+    /**
+     * Limit how long the batch may run from its start. A batch running longer is cancelled as by
+     * {@link #cancel()}, and {@link BatchStats#isTimedOut()} reports it.
+     *
+     * @param timeoutMillis timeout in milliseconds, or 0 (the default) for no timeout.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setBatchTimeout(long timeoutMillis) {
+        if (timeoutMillis < 0) {
+            throw new IllegalArgumentException("timeoutMillis must not be negative");
+        }
+        this.batchTimeoutMillis = timeoutMillis;
+        return this;
+    }
+
+    /**
+     * Report task attempts, and waits of the batch thread for the ui thread, that run longer than the
+     * threshold. Each of them is logged once with the stack of its thread, and counted by
+     * {@link BatchStats#getStallCount()}.
+     *
+     * @param thresholdMillis threshold in milliseconds, or 0 (the default) to not watch for stalls.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setStallThreshold(long thresholdMillis) {
+        if (thresholdMillis < 0) {
+            throw new IllegalArgumentException("thresholdMillis must not be negative");
+        }
+        this.stallThresholdMillis = thresholdMillis;
+        return this;
+    }
+
+    /**
+     * Show the built-in dialog only if the batch is still running after the delay, so that short batches
+     * finish without flashing a dialog. The dialog is not even created until then. Has no effect on
+     * external views.
+     *
+     * @param delayMillis delay in milliseconds, 0 (the default) to show the dialog right away.
+     * @return this batch worker, for chaining.
+     */
+    public BatchWorker<T, V> setShowDelay(long delayMillis) {
+        if (delayMillis < 0) {
+            throw new IllegalArgumentException("delayMillis must not be negative");
+        }
+        this.showDelayMillis = delayMillis;
+        return this;
+    }
+
+    /**
+     * Start the batch task. The batch is queued on its {@link BatchWorkerEngine}, and starts as soon
+     * as the engine has room for it.
+     * <br>
+     * Called on the main thread, the short preWork runs right away, before this method returns, and
+     * the batch does not wait for the main thread to start.
+     */
+    public void start() {
+        if (!headless && Looper.myLooper() == Looper.getMainLooper()) {
+            beginUi();
+            shortPreWorkDone = true;
+        }
+        BatchWorkerEngine activeEngine = engine != null ?
+            engine :
+            BatchWorkerEngine.getDefault();
+        BatchMetrics metrics = new BatchMetrics(traceEnabled);
+        activeEngine.submitBatch(
+            new Runnable() {
+                // non-blocking progress publisher, created with the batch
+                private int totalCount;
+
+                // data items whose results were restored from the checkpoint store
+                private final BitSet restoredIndices = new BitSet();
+                private int restoredCount;
+
+                // keys of more than one data item, and their calls, null unless deduplicating within the batch
+                private Set<Object> duplicateKeys;
+                private final ConcurrentHashMap<Object, InFlightCall<V>> batchCalls = new ConcurrentHashMap<>();
+
+                // weights of the data items, null unless weighed
+                private long[] itemWeights;
+                private long totalWeight;
+
+                // decides how many data items are handed to a BatchedWorkerCallBack at once
+                private final ChunkSizer chunkSizer = new ChunkSizer(
+                    workerCallBack instanceof BatchedWorkerCallBack ? chunkSize : 1
+                );
+
+                /**
+                 * Performs the tasks of a chunk of consecutive data items on the calling thread,
+                 * and publishes the progress of the batch around each of them.
+                 * Results of tasks that complete after a cancellation are dropped.
+                 * */
+                private void runChunk(int from, int to, ResultCollector<V> resultCollector, AtomicInteger completedCount) {
+                    // publish the active task, without waiting for the ui
+                    publishProgress(from, completedCount.get());
+
+                    if (restoredIndices.nextClearBit(from) >= to) {
+                        // the whole chunk was restored from the checkpoint store
+                    } else if (workerCallBack instanceof BatchedWorkerCallBack) {
+                        // do the tasks of the whole chunk at once in the calling thread
+                        List<V> chunkResults = null;
+                        int[] attemptCount = {0};
+                        long chunkStart = metrics.onTaskStart();
+                        try {
+                            chunkResults = lookupCachedChunk(from, to);
+                            if (chunkResults == null) {
+                                chunkResults = performWithRetries(
+                                    new TaskAttempt<List<V>>() {
+                                        @Override
+                                        public List<V> attempt() {
+                                            return attemptChunk(from, to);
+                                        }
+                                    },
+                                    attemptCount
+                                );
+                                for (int i = from; i < to; ++i) {
+                                    cacheResult(i, chunkResults.get(i - from));
+                                }
+                            }
+                        } catch (Throwable e) {
+                            if (cancellationToken.isCancelled()) {
+                                return;
+                            }
+                            handleTaskFailure(from, to, e, attemptCount[0]);
+                        } finally {
+                            metrics.onTaskEnd(chunkStart, to - from);
+                        }
+                        chunkSizer.record(to - from, System.nanoTime() - chunkStart);
+                        if (cancellationToken.isCancelled()) {
+                            return;
+                        }
+
+                        // publish the completion of each task of the chunk
+                        // restored data items of a partially restored chunk keep their restored results
+                        for (int i = from; i < to; ++i) {
+                            if (restoredIndices.get(i)) {
+                                continue;
+                            }
+                            if (chunkResults != null) {
+                                resultCollector.set(i, chunkResults.get(i - from));
+                                checkpoint(i, chunkResults.get(i - from));
+                            } else {
+                                resultCollector.set(i, null);
+                            }
+                            recordCompletedWeight(i);
+                            publishProgress(i, completedCount.incrementAndGet());
+                        }
+                    } else {
+                        for (int i = from; i < to && !cancellationToken.isCancelled(); ++i) {
+                            final int index = i;
+                            if (restoredIndices.get(index)) {
+                                continue;
+                            }
+                            if (index > from) {
+                                publishProgress(index, completedCount.get());
+                            }
+
+                            // do the task in the calling thread
+                            V result = null;
+                            boolean failed = false;
+                            int[] attemptCount = {0};
+                            long taskStart = metrics.onTaskStart();
+                            try {
+                                result = lookupCachedResult(index);
+                                if (result == null) {
+                                    result = performDeduplicated(
+                                        index,
+                                        new TaskAttempt<V>() {
+                                            @Override
+                                            public V attempt() {
+                                                return attemptTask(index);
+                                            }
+                                        },
+                                        attemptCount
+                                    );
+                                    cacheResult(index, result);
+                                }
+                            } catch (Throwable e) {
+                                if (cancellationToken.isCancelled()) {
+                                    return;
+                                }
+                                handleTaskFailure(index, index + 1, e, attemptCount[0]);
+                                failed = true;
+                            } finally {
+                                metrics.onTaskEnd(taskStart, 1);
+                            }
+                            if (cancellationToken.isCancelled()) {
+                                return;
+                            }
+                            resultCollector.set(index, result);
+                            if (!failed) {
+                                checkpoint(index, result);
+                            }
+
+                            // publish the completion of the task
+                            recordCompletedWeight(index);
+                            publishProgress(index, completedCount.incrementAndGet());
+                        }
+                    }
+
+                    // the data items of the chunk will not be accessed anymore
+                    if (dataItems instanceof StreamingDataList) {
+                        ((StreamingDataList<T>) dataItems).release(from, to);
+                    }
+                }
+
+                /**
+                 * Publishes the progress of the tasks to the ui (at most once per frame) and to the progress listener.
+                 * */
+                private void publishProgress(int activeIndex, int completedCount) {
+                    if (progressPublisher != null) {
+                        progressPublisher.publish(activeIndex, completedCount);
+                    }
+                    if (progressListener != null) {
+                        progressListener.onProgress(activeIndex, completedCount, totalCount);
+                    }
+                    progressStream.publish(activeIndex, completedCount);
+                }
+
+                /**
+                 * Weighs all the data items, if there is an item weigher.
+                 * */
+                private void weighItems() {
+                    if (itemWeigher == null) {
+                        return;
+                    }
+                    itemWeights = new long[totalCount];
+                    for (int i = 0; i < totalCount; ++i) {
+                        itemWeights[i] = Math.max(itemWeigher.getWeight(dataItems.get(i)), 0);
+                        totalWeight += itemWeights[i];
+                    }
+                    if (totalWeight == 0) {
+                        // nothing to measure the progress by
+                        itemWeights = null;
+                    }
+                }
+
+                /**
+                 * Adds the weight of a completed data item to the progress, if the data items are weighed.
+                 * */
+                private void recordCompletedWeight(int index) {
+                    if (itemWeights != null) {
+                        progressStream.addCompletedWeight(itemWeights[index]);
+                    }
+                }
+
+                /**
+                 * Whether the data items are scheduled heaviest first.
+                 * */
+                private boolean isHeaviestFirst() {
+                    return heaviestFirst && itemWeights != null;
+                }
+
+                /**
+                 * @return the cached result of the data item, or null if there is none or no result cache.
+                 * */
+                private V lookupCachedResult(int index) {
+                    if (resultCache == null) {
+                        return null;
+                    }
+                    V result = resultCache.get(cacheKeyExtractor.getKey(dataItems.get(index)));
+                    metrics.onCacheLookup(result != null);
+                    return result;
+                }
+
+                /**
+                 * @return the cached results of the chunk, or null unless all of them are cached.
+                 * */
+                private List<V> lookupCachedChunk(int from, int to) {
+                    if (resultCache == null) {
+                        return null;
+                    }
+                    List<V> cachedResults = new ArrayList<>(to - from);
+                    for (int i = from; i < to; ++i) {
+                        V result = lookupCachedResult(i);
+                        if (result == null) {
+                            return null;
+                        }
+                        cachedResults.add(result);
+                    }
+                    return cachedResults;
+                }
+
+                private void cacheResult(int index, V result) {
+                    if (resultCache != null && result != null && !cancellationToken.isCancelled()) {
+                        resultCache.put(cacheKeyExtractor.getKey(dataItems.get(index)), result);
+                    }
+                }
+
+                /**
+                 * Performs a single attempt at the task of a data item, interruptible by a cancellation.
+                 * */
+                @SuppressWarnings("unchecked")
+                private V attemptTask(int index) {
+                    Object limitKey = null;
+                    beginInterruptibleWork();
+                    try {
+                        acquireRatePermits(1);
+                        if (keyConcurrencyLimiter != null) {
+                            Object key = limitKeyExtractor.getKey(dataItems.get(index));
+                            acquireKeySlot(key);
+                            limitKey = key;
+                        }
+                        return workerCallBack instanceof CancellableWorkerCallBack ?
+                            ((CancellableWorkerCallBack<T, V>) workerCallBack).performTask(
+                                dataItems,
+                                index,
+                                cancellationToken
+                            ) :
+                            workerCallBack.performTask(dataItems, index);
+                    } finally {
+                        if (limitKey != null) {
+                            keyConcurrencyLimiter.release(limitKey);
+                        }
+                        endInterruptibleWork();
+                    }
+                }
+
+                /**
+                 * Performs a single attempt at the tasks of a chunk, interruptible by a cancellation.
+                 * */
+                @SuppressWarnings("unchecked")
+                private List<V> attemptChunk(int from, int to) {
+                    List<V> chunkResults;
+                    beginInterruptibleWork();
+                    try {
+                        acquireRatePermits(to - from);
+                        chunkResults = ((BatchedWorkerCallBack<T, V>) workerCallBack).performChunk(
+                            dataItems,
+                            from,
+                            to
+                        );
+                    } finally {
+                        endInterruptibleWork();
+                    }
+                    if (chunkResults == null || chunkResults.size() != to - from) {
+                        throw new IllegalStateException(
+                            String.format(
+                                "performChunk(%s, %s) must return %s results",
+                                from,
+                                to,
+                                to - from
+                            )
+                        );
+                    }
+                    return chunkResults;
+                }
+
+                /**
+                 * Waits for a slot of the key under the key concurrency limit. Must be called within
+                 * interruptible work, and the slot must be released once acquired.
+                 * */
+                private void acquireKeySlot(Object limitKey) {
+                    try {
+                        metrics.addKeyConcurrencyWaitNanos(keyConcurrencyLimiter.acquire(limitKey));
+                    } catch (InterruptedException e) {
+                        throw new CancellationException("Batch was cancelled");
+                    }
+                }
+
+                /**
+                 * Waits for the rate limiter, if any. Must be called within interruptible work.
+                 * */
+                private void acquireRatePermits(int permits) {
+                    if (rateLimiter != null) {
+                        try {
+                            metrics.addRateLimitWaitNanos(rateLimiter.acquire(permits));
+                        } catch (InterruptedException e) {
+                            throw new CancellationException("Batch was cancelled");
+                        }
+                    }
+                }
+
+                /**
+                 * Performs the attempt, retrying it as the retry policy allows.
+                 * The backoff between the attempts is interrupted by a cancellation.
+                 * Each attempt is watched for the task timeout and for stalls.
+                 *
+                 * @param attemptCount receives the number of attempts made.
+                 * */
+                private <R> R performWithRetries(TaskAttempt<R> attempt, int[] attemptCount) {
+                    for (int attemptNumber = 1; ; ++attemptNumber) {
+                        attemptCount[0] = attemptNumber;
+                        Throwable failure;
+                        WatchedWork work = beginWatchedWork(WATCHED_TASK, taskTimeoutMillis);
+                        try {
+                            R result = attempt.attempt();
+                            if (work == null || !work.timedOut) {
+                                return result;
+                            }
+                            // the late result of a timed out attempt is dropped
+                            failure = new TaskTimeoutException(taskTimeoutMillis, null);
+                        } catch (Throwable e) {
+                            // whatever the interruption caused, a timed out attempt failed by timing out
+                            failure = work != null && work.timedOut && !(e instanceof TaskTimeoutException) ?
+                                new TaskTimeoutException(taskTimeoutMillis, e) :
+                                e;
+                        } finally {
+                            endWatchedWork(work);
+                        }
+                        if (!shouldRetry(failure, attemptNumber)) {
+                            throw Throwables.rethrow(failure);
+                        }
+
+                        metrics.onRetry();
+                        if (retryPolicy == null) {
+                            // a timed out attempt retried without a policy, right away
+                            continue;
+                        }
+                        beginInterruptibleWork();
+                        try {
+                            Thread.sleep(retryPolicy.getBackoffMillis(attemptNumber));
+                        } catch (InterruptedException e) {
+                            throw new CancellationException("Batch was cancelled");
+                        } finally {
+                            endInterruptibleWork();
+                        }
+                    }
+                }
+
+                /**
+                 * Finds the keys shared by more than one data item, if deduplicating.
+                 * */
+                private void findDuplicateKeys() {
+                    if (dedupKeyExtractor == null || dataItems instanceof StreamingDataList) {
+                        return;
+                    }
+                    Set<Object> keys = new HashSet<>();
+                    duplicateKeys = new HashSet<>();
+                    for (int i = 0; i < totalCount; ++i) {
+                        Object key = dedupKeyExtractor.getKey(dataItems.get(i));
+                        if (!keys.add(key)) {
+                            duplicateKeys.add(key);
+                        }
+                    }
+                }
+
+                /**
+                 * Performs the task of the data item once per key: a duplicate data item of the batch
+                 * takes the outcome of the first one, and a data item whose key is running in another
+                 * batch waits for its outcome.
+                 * */
+                private V performDeduplicated(int index, TaskAttempt<V> attempt, int[] attemptCount) {
+                    if (dedupKeyExtractor == null) {
+                        return performWithRetries(attempt, attemptCount);
+                    }
+                    Object key = dedupKeyExtractor.getKey(dataItems.get(index));
+
+                    // the first data item of a duplicated key is performed, the others wait for it
+                    InFlightCall<V> batchCall = null;
+                    if (duplicateKeys != null && duplicateKeys.contains(key)) {
+                        InFlightCall<V> call = new InFlightCall<>();
+                        InFlightCall<V> firstCall = batchCalls.putIfAbsent(key, call);
+                        if (firstCall != null) {
+                            if (!awaitCall(firstCall)) {
+                                throw new CancellationException("Batch was cancelled");
+                            }
+                            metrics.onItemDeduplicated();
+                            return firstCall.get();
+                        }
+                        batchCall = call;
+                    }
+
+                    try {
+                        V result = performShared(key, attempt, attemptCount);
+                        if (batchCall != null) {
+                            batchCall.complete(result);
+                        }
+                        return result;
+                    } catch (Throwable e) {
+                        if (batchCall != null) {
+                            if (cancellationToken.isCancelled()) {
+                                batchCall.abandon();
+                            } else {
+                                batchCall.fail(e);
+                            }
+                        }
+                        throw Throwables.rethrow(e);
+                    }
+                }
+
+                /**
+                 * Performs the task of the key, unless it is running in another batch of the in-flight
+                 * registry, in which case its outcome is awaited. The task is performed after all if the
+                 * other batch gives it up.
+                 * */
+                private V performShared(Object key, TaskAttempt<V> attempt, int[] attemptCount) {
+                    if (inFlightRegistry == null) {
+                        return performWithRetries(attempt, attemptCount);
+                    }
+                    while (true) {
+                        InFlightCall<V> call = new InFlightCall<>();
+                        InFlightCall<V> runningCall = inFlightRegistry.register(key, call);
+                        if (runningCall != null) {
+                            if (awaitCall(runningCall)) {
+                                metrics.onItemDeduplicated();
+                                return runningCall.get();
+                            }
+                            // abandoned by a cancelled batch, take it over
+                            continue;
+                        }
+
+                        try {
+                            V result = performWithRetries(attempt, attemptCount);
+                            call.complete(result);
+                            return result;
+                        } catch (Throwable e) {
+                            if (cancellationToken.isCancelled()) {
+                                call.abandon();
+                            } else {
+                                call.fail(e);
+                            }
+                            throw Throwables.rethrow(e);
+                        } finally {
+                            inFlightRegistry.unregister(key, call);
+                        }
+                    }
+                }
+
+                /**
+                 * Waits for the call of another data item, interrupted by a cancellation.
+                 *
+                 * @return false if the call was abandoned.
+                 * */
+                private boolean awaitCall(InFlightCall<V> call) {
+                    beginInterruptibleWork();
+                    try {
+                        return call.await();
+                    } catch (InterruptedException e) {
+                        throw new CancellationException("Batch was cancelled");
+                    } finally {
+                        endInterruptibleWork();
+                    }
+                }
+
+                /**
+                 * Whether a failed attempt is retried. Timed out attempts are retried only by
+                 * {@link TimeoutAction#RETRY}, once if there is no retry policy.
+                 * */
+                private boolean shouldRetry(Throwable failure, int attemptNumber) {
+                    if (cancellationToken.isCancelled()) {
+                        return false;
+                    }
+                    if (failure instanceof TaskTimeoutException) {
+                        if (taskTimeoutAction != TimeoutAction.RETRY) {
+                            return false;
+                        }
+                        return retryPolicy != null ?
+                            retryPolicy.shouldRetry(failure, attemptNumber) :
+                            attemptNumber < 2;
+                    }
+                    return retryPolicy != null && retryPolicy.shouldRetry(failure, attemptNumber);
+                }
+
+                /**
+                 * Reports the failure of the data items of the given range. Re-throws it to stop
+                 * the batch, unless the failures are collected. Data items skipped by a timeout
+                 * complete without a result, and are not reported.
+                 * */
+                private void handleTaskFailure(int from, int to, Throwable e, int attemptCount) {
+                    if (e instanceof TaskTimeoutException && taskTimeoutAction == TimeoutAction.SKIP) {
+                        return;
+                    }
+                    metrics.onItemsFailed(to - from);
+                    for (int i = from; i < to; ++i) {
+                        reportFailure(new ItemFailure(i, e, attemptCount));
+                    }
+                    if (errorMode == ErrorMode.FAIL_FAST) {
+                        throw Throwables.rethrow(e);
+                    }
+                }
+
+                /**
+                 * Records the result of a completed data item in the checkpoint store, if there is one.
+                 * A failing store does not fail the batch, the data item is performed again on resume.
+                 * */
+                private void checkpoint(int index, V result) {
+                    if (checkpointStore != null) {
+                        try {
+                            checkpointStore.append(index, resultSerializer.serialize(result));
+                        } catch (IOException e) {
+                            Platform.logWarning(TAG, "Could not checkpoint the result of data item " + index, e);
+                        }
+                    }
+                }
+
+                /**
+                 * Restores the checkpointed results of a previous run of the batch, in input order.
+                 * Their data items will be skipped.
+                 * */
+                private void restoreCheckpoint(ResultCollector<V> resultCollector) {
+                    if (checkpointStore == null) {
+                        return;
+                    }
+                    Map<Integer, byte[]> checkpointed;
+                    try {
+                        checkpointed = checkpointStore.load();
+                    } catch (IOException e) {
+                        Platform.logWarning(TAG, "Could not load the checkpoint, starting from scratch", e);
+                        return;
+                    }
+                    List<Integer> indices = new ArrayList<>(checkpointed.keySet());
+                    Collections.sort(indices);
+                    for (int index : indices) {
+                        resultCollector.set(index, resultSerializer.deserialize(checkpointed.get(index)));
+                        restoredIndices.set(index);
+                    }
+                    restoredCount = indices.size();
+                }
+
+                /**
+                 * Clears the checkpoint store of a completed batch, there is nothing to resume.
+                 * Otherwise, writes the buffered checkpoints through.
+                 * */
+                private void closeCheckpoint(boolean completed) {
+                    if (checkpointStore != null) {
+                        try {
+                            if (completed) {
+                                checkpointStore.clear();
+                            } else {
+                                checkpointStore.close();
+                            }
+                        } catch (IOException e) {
+                            Platform.logWarning(TAG, "Could not close the checkpoint store", e);
+                        }
+                    }
+                }
+
+                /**
+                 * End (exclusive) of the available data items in the given range. Pulls the data items
+                 * of a streaming data source if necessary.
+                 * */
+                @SuppressWarnings("unchecked")
+                private int availableEnd(int from, int to) {
+                    if (dataItems instanceof StreamingDataList) {
+                        return ((StreamingDataList<T>) dataItems).availableEnd(from, to);
+                    } else {
+                        return Math.max(from, Math.min(dataItems.size(), to));
+                    }
+                }
+
+                /**
+                 * Hands the tasks to a number of workers, and waits for all of them to stop.
+                 * A single worker claims the chunks in input order, which is the sequential mode.
+                 * With adaptive concurrency, workers above the current limit retire, and are started
+                 * again when the limit is raised.
+                 * Any failure of a task stops the other workers, and is re-thrown in the enclosing thread.
+                 * */
+                private void runTasks(ResultCollector<V> resultCollector) {
+                    boolean parallel = parallelism > 1 || executor != null || adaptiveConcurrency;
+                    Executor activeExecutor = executor != null ?
+                        executor :
+                        activeEngine.getWorkerExecutor();
+                    int workerCount = !parallel ?
+                        1 :
+                        parallelism > 1 ?
+                            parallelism :
+                            executor != null ?
+                                Runtime.getRuntime().availableProcessors() :
+                                activeEngine.getWorkerPoolSize();
+                    ConcurrencyController concurrencyController = adaptiveConcurrency ?
+                        new ConcurrencyController(workerCount, deviceStateContext) :
+                        null;
+
+                    PriorityScheduler<T> scheduler = schedulingPolicy == null && !isHeaviestFirst() ?
+                        null :
+                        new PriorityScheduler<>(
+                            dataItems,
+                            restoredIndices,
+                            schedulingPolicy,
+                            isHeaviestFirst() ? itemWeights : null,
+                            workerCount
+                        );
+                    activeScheduler = scheduler;
+
+                    AtomicInteger nextIndex = new AtomicInteger(0);
+                    AtomicInteger completedCount = new AtomicInteger(restoredCount);
+                    AtomicReference<Throwable> failure = new AtomicReference<>(null);
+                    AtomicBoolean drained = new AtomicBoolean(false);
+
+                    // running workers, guarded by the array
+                    boolean[] workerRunning = new boolean[workerCount];
+                    int[] runningCount = {0};
+
+                    Runnable[] workers = new Runnable[workerCount];
+                    for (int w = 0; w < workerCount; ++w) {
+                        final int worker = w;
+                        workers[w] = new Runnable() {
+                            @Override
+                            public void run() {
+                                boolean finished = true;
+                                recordQueueDepth(activeExecutor);
+                                try {
+                                    // work for a time slice, then yield the thread to the
+                                    // workers of the other batches sharing the executor
+                                    long sliceEnd = System.nanoTime() + WORKER_TIME_SLICE_NANOS;
+                                    while (!cancellationToken.isCancelled() && failure.get() == null) {
+                                        // retire if the concurrency limit was lowered
+                                        if (concurrencyController != null && worker >= concurrencyController.getLimit()) {
+                                            break;
+                                        }
+                                        if (scheduler != null) {
+                                            // claim the next data item by priority
+                                            int index = scheduler.next(worker);
+                                            if (index == PriorityScheduler.NO_INDEX) {
+                                                drained.set(true);
+                                                break;
+                                            }
+                                            runChunk(
+                                                index,
+                                                index + 1,
+                                                resultCollector,
+                                                completedCount
+                                            );
+                                            if (!cancellationToken.isCancelled() &&
+                                                schedulingPolicy != null &&
+                                                schedulingPolicy.isPastDeadline(dataItems.get(index))) {
+                                                metrics.onDeadlineMissed();
+                                            }
+                                        } else {
+                                            // claim the next chunk of data items
+                                            int size = chunkSizer.nextChunkSize();
+                                            int from = nextIndex.getAndAdd(size);
+                                            int to = availableEnd(from, from + size);
+                                            if (to <= from) {
+                                                drained.set(true);
+                                                break;
+                                            }
+                                            runChunk(
+                                                from,
+                                                to,
+                                                resultCollector,
+                                                completedCount
+                                            );
+                                        }
+                                        if (System.nanoTime() - sliceEnd > 0) {
+                                            activeExecutor.execute(this);
+                                            finished = false;
+                                            break;
+                                        }
+                                    }
+                                } catch (Throwable t) {
+                                    // failures caused by a cancellation are expected
+                                    if (!cancellationToken.isCancelled()) {
+                                        failure.compareAndSet(null, t);
+                                    }
+                                    finished = true;
+                                } finally {
+                                    if (finished) {
+                                        synchronized (workerRunning) {
+                                            workerRunning[worker] = false;
+                                            --runningCount[0];
+                                            workerRunning.notifyAll();
+                                        }
+                                    }
+                                }
+                            }
+                        };
+                    }
+
+                    // start the workers, and supervise them until they have all stopped.
+                    // after a cancellation, workers that are still running when the grace period
+                    // has elapsed are abandoned.
+                    boolean interrupted = false;
+                    while (true) {
+                        if (cancellationToken.isCancelled()) {
+                            if (System.nanoTime() - cancellationToken.getCancellationTimeNanos() >=
+                                TimeUnit.MILLISECONDS.toNanos(cancellationGracePeriodMillis)) {
+                                break;
+                            }
+                        } else if (!drained.get() && failure.get() == null) {
+                            int limit = workerCount;
+                            if (concurrencyController != null) {
+                                concurrencyController.update(metrics);
+                                limit = concurrencyController.getLimit();
+                            }
+                            for (int w = 0; w < limit; ++w) {
+                                boolean start;
+                                synchronized (workerRunning) {
+                                    start = !workerRunning[w];
+                                    if (start) {
+                                        workerRunning[w] = true;
+                                        ++runningCount[0];
+                                    }
+                                }
+                                if (start) {
+                                    activeExecutor.execute(workers[w]);
+                                }
+                            }
+                        }
+                        synchronized (workerRunning) {
+                            if (runningCount[0] == 0 &&
+                                (drained.get() || failure.get() != null || cancellationToken.isCancelled())) {
+                                break;
+                            }
+                            try {
+                                workerRunning.wait(QUIESCENCE_POLL_MILLIS);
+                            } catch (InterruptedException e) {
+                                interrupted = true;
+                                cancelOnInterrupt(e);
+                            }
+                        }
+                    }
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                    activeScheduler = null;
+
+                    Throwable t = failure.get();
+                    if (t != null) {
+                        throw Throwables.rethrow(t);
+                    }
+                }
+
+                /**
+                 * Cancels the batch when the enclosing thread is interrupted while supervising the workers,
+                 * e.g. when its pool is shut down forcibly. The supervisor keeps waiting for the workers to stop,
+                 * so the batch ends as cancelled rather than completed with partial results.
+                 * */
+                private void cancelOnInterrupt(InterruptedException e) {
+                    if (!cancellationToken.isCancelled()) {
+                        Platform.logWarning(TAG, "Batch thread was interrupted, cancelling the batch", e);
+                        cancel();
+                    }
+                }
+
+                /**
+                 * Runs the data items through the stages of the pipeline, and waits for all the stage
+                 * workers to stop. A stage worker runs while its stage has input and room in the queue
+                 * of the next stage, and is started again when it has both. Nothing blocks on a queue,
+                 * so the stages can share a pool of any size.
+                 * Any failure of a task stops the other workers, and is re-thrown in the enclosing thread.
+                 * */
+                @SuppressWarnings("unchecked")
+                private void runPipeline(ResultCollector<V> resultCollector) {
+                    List<Pipeline.StageSpec> stages = pipeline.getStages();
+                    int stageCount = stages.size();
+                    Executor activeExecutor = executor != null ?
+                        executor :
+                        activeEngine.getWorkerExecutor();
+
+                    // the workers of the first stage share a single local queue of the scheduler
+                    PriorityScheduler<T> scheduler = schedulingPolicy == null && !isHeaviestFirst() ?
+                        null :
+                        new PriorityScheduler<>(
+                            dataItems,
+                            restoredIndices,
+                            schedulingPolicy,
+                            isHeaviestFirst() ? itemWeights : null,
+                            1
+                        );
+                    activeScheduler = scheduler;
+
+                    AtomicInteger nextIndex = new AtomicInteger(0);
+                    AtomicInteger completedCount = new AtomicInteger(restoredCount);
+                    AtomicInteger inFlightCount = new AtomicInteger(0);
+                    AtomicReference<Throwable> failure = new AtomicReference<>(null);
+                    AtomicBoolean drained = new AtomicBoolean(false);
+                    Object monitor = new Object();
+
+                    // the queue in front of each stage (none for the first one), bounded by its permits
+                    List<Queue<PipelineItem>> queues = new ArrayList<>(stageCount);
+                    Semaphore[] queuePermits = new Semaphore[stageCount];
+                    AtomicInteger[] runningWorkers = new AtomicInteger[stageCount];
+                    for (int k = 0; k < stageCount; ++k) {
+                        queues.add(new ConcurrentLinkedQueue<PipelineItem>());
+                        queuePermits[k] = new Semaphore(k == 0 ? 0 : stages.get(k).queueCapacity);
+                        runningWorkers[k] = new AtomicInteger(0);
+                    }
+
+                    // starts workers of a stage while it has work for them
+                    final StageStarter stageStarter = new StageStarter() {
+                        @Override
+                        public void start(int stage) {
+                            while (!cancellationToken.isCancelled() && failure.get() == null) {
+                                boolean hasInput = stage == 0 ?
+                                    !drained.get() :
+                                    !queues.get(stage).isEmpty();
+                                boolean hasRoom = stage == stageCount - 1 ||
+                                    queuePermits[stage + 1].availablePermits() > 0;
+                                int running = runningWorkers[stage].get();
+                                if (!hasInput || !hasRoom || running >= stages.get(stage).parallelism) {
+                                    return;
+                                }
+                                if (runningWorkers[stage].compareAndSet(running, running + 1)) {
+                                    activeExecutor.execute(newStageWorker(stage));
+                                }
+                            }
+                        }
+
+                        private Runnable newStageWorker(int stage) {
+                            boolean last = stage == stageCount - 1;
+                            return new Runnable() {
+                                @Override
+                                public void run() {
+                                    boolean finished = true;
+                                    recordQueueDepth(activeExecutor);
+                                    try {
+                                        long sliceEnd = System.nanoTime() + WORKER_TIME_SLICE_NANOS;
+                                        while (!cancellationToken.isCancelled() && failure.get() == null) {
+                                            // reserve room for the output first, so that it always has somewhere to go
+                                            if (!last && !queuePermits[stage + 1].tryAcquire()) {
+                                                break;
+                                            }
+                                            PipelineItem item = stage == 0 ?
+                                                claimPipelineItem(scheduler, nextIndex, inFlightCount, drained) :
+                                                queues.get(stage).poll();
+                                            if (item == null) {
+                                                if (!last) {
+                                                    queuePermits[stage + 1].release();
+                                                }
+                                                break;
+                                            }
+                                            if (stage > 0) {
+                                                // there is room for the previous stage again
+                                                queuePermits[stage].release();
+                                                start(stage - 1);
+                                            }
+
+                                            boolean forward = runPipelineStage(
+                                                stages.get(stage).stage,
+                                                stage,
+                                                last,
+                                                item,
+                                                resultCollector,
+                                                completedCount
+                                            );
+                                            if (forward) {
+                                                queues.get(stage + 1).add(item);
+                                                start(stage + 1);
+                                            } else {
+                                                if (!last) {
+                                                    queuePermits[stage + 1].release();
+                                                }
+                                                inFlightCount.decrementAndGet();
+                                            }
+                                            if (System.nanoTime() - sliceEnd > 0) {
+                                                activeExecutor.execute(this);
+                                                finished = false;
+                                                break;
+                                            }
+                                        }
+                                    } catch (Throwable t) {
+                                        // failures caused by a cancellation are expected
+                                        if (!cancellationToken.isCancelled()) {
+                                            failure.compareAndSet(null, t);
+                                        }
+                                        finished = true;
+                                    } finally {
+                                        if (finished) {
+                                            runningWorkers[stage].decrementAndGet();
+                                            // work may have arrived after the last check
+                                            start(stage);
+                                            synchronized (monitor) {
+                                                monitor.notifyAll();
+                                            }
+                                        }
+                                    }
+                                }
+                            };
+                        }
+                    };
+
+                    // supervise the stages until all the data items went through, or the batch stopped.
+                    // after a cancellation, workers that are still running when the grace period
+                    // has elapsed are abandoned.
+                    boolean interrupted = false;
+                    while (true) {
+                        if (cancellationToken.isCancelled()) {
+                            if (System.nanoTime() - cancellationToken.getCancellationTimeNanos() >=
+                                TimeUnit.MILLISECONDS.toNanos(cancellationGracePeriodMillis)) {
+                                break;
+                            }
+                        } else {
+                            for (int k = 0; k < stageCount; ++k) {
+                                stageStarter.start(k);
+                            }
+                        }
+                        synchronized (monitor) {
+                            boolean stopped = true;
+                            for (int k = 0; k < stageCount; ++k) {
+                                stopped &= runningWorkers[k].get() == 0;
+                            }
+                            if (stopped &&
+                                ((drained.get() && inFlightCount.get() == 0) ||
+                                    failure.get() != null ||
+                                    cancellationToken.isCancelled())) {
+                                break;
+                            }
+                            try {
+                                monitor.wait(QUIESCENCE_POLL_MILLIS);
+                            } catch (InterruptedException e) {
+                                interrupted = true;
+                                cancelOnInterrupt(e);
+                            }
+                        }
+                    }
+                    if (interrupted) {
+                        Thread.currentThread().interrupt();
+                    }
+                    activeScheduler = null;
+
+                    Throwable t = failure.get();
+                    if (t != null) {
+                        throw Throwables.rethrow(t);
+                    }
+                }
+
+                /**
+                 * Claims the next data item for the first stage of the pipeline.
+                 *
+                 * @return the data item, or null if there are no more.
+                 * */
+                private PipelineItem claimPipelineItem(PriorityScheduler<T> scheduler,
+                                                       AtomicInteger nextIndex,
+                                                       AtomicInteger inFlightCount,
+                                                       AtomicBoolean drained) {
+                    while (true) {
+                        int index;
+                        if (scheduler != null) {
+                            index = scheduler.next(0);
+                            if (index == PriorityScheduler.NO_INDEX) {
+                                drained.set(true);
+                                return null;
+                            }
+                        } else {
+                            index = nextIndex.getAndIncrement();
+                            if (availableEnd(index, index + 1) <= index) {
+                                drained.set(true);
+                                return null;
+                            }
+                        }
+                        if (!restoredIndices.get(index)) {
+                            inFlightCount.incrementAndGet();
+                            T dataItem = dataItems.get(index);
+                            return new PipelineItem(
+                                index,
+                                dataItem,
+                                keyConcurrencyLimiter != null ?
+                                    limitKeyExtractor.getKey(dataItem) :
+                                    null
+                            );
+                        }
+                    }
+                }
+
+                /**
+                 * Runs a stage of the pipeline for a data item. The last stage, a failure or a cached
+                 * result completes the data item.
+                 *
+                 * @return whether the data item must be handed to the next stage.
+                 * */
+                @SuppressWarnings("unchecked")
+                private boolean runPipelineStage(PipelineStage<Object, Object> stage,
+                                                 int stageIndex,
+                                                 boolean last,
+                                                 PipelineItem item,
+                                                 ResultCollector<V> resultCollector,
+                                                 AtomicInteger completedCount) {
+                    // the latency of a data item spans all of its stages
+                    long stageStart = metrics.onTaskStart();
+                    if (stageIndex == 0) {
+                        item.startNanos = stageStart;
+
+                        // publish the active task, without waiting for the ui
+                        publishProgress(item.index, completedCount.get());
+                        V cached = lookupCachedResult(item.index);
+                        if (cached != null) {
+                            metrics.onTaskEnd(stageStart, 1);
+                            completePipelineItem(item.index, cached, false, resultCollector, completedCount);
+                            return false;
+                        }
+                    }
+                    Object output = null;
+                    Throwable error = null;
+                    int[] attemptCount = {0};
+                    try {
+                        output = performWithRetries(
+                            new TaskAttempt<Object>() {
+                                @Override
+                                public Object attempt() {
+                                    // the limits apply to each stage on its own
+                                    boolean keySlotAcquired = false;
+                                    beginInterruptibleWork();
+                                    try {
+                                        acquireRatePermits(1);
+                                        if (keyConcurrencyLimiter != null) {
+                                            acquireKeySlot(item.limitKey);
+                                            keySlotAcquired = true;
+                                        }
+                                        return stage.process(item.value, item.index);
+                                    } finally {
+                                        if (keySlotAcquired) {
+                                            keyConcurrencyLimiter.release(item.limitKey);
+                                        }
+                                        endInterruptibleWork();
+                                    }
+                                }
+                            },
+                            attemptCount
+                        );
+                    } catch (Throwable e) {
+                        error = e;
+                    } finally {
+                        boolean completes = last || error != null;
+                        metrics.onTaskEnd(completes ? item.startNanos : stageStart, completes ? 1 : 0);
+                    }
+                    if (cancellationToken.isCancelled()) {
+                        return false;
+                    }
+                    if (error != null) {
+                        handleTaskFailure(item.index, item.index + 1, error, attemptCount[0]);
+                        completePipelineItem(item.index, null, true, resultCollector, completedCount);
+                        return false;
+                    }
+                    if (last) {
+                        completePipelineItem(item.index, (V) output, false, resultCollector, completedCount);
+                        return false;
+                    }
+                    item.value = output;
+                    return true;
+                }
+
+                /**
+                 * Delivers the result of a data item that went through the pipeline, and publishes its completion.
+                 * */
+                @SuppressWarnings("unchecked")
+                private void completePipelineItem(int index,
+                                                  V result,
+                                                  boolean failed,
+                                                  ResultCollector<V> resultCollector,
+                                                  AtomicInteger completedCount) {
+                    resultCollector.set(index, result);
+                    if (!failed) {
+                        checkpoint(index, result);
+                        cacheResult(index, result);
+                    }
+                    if (schedulingPolicy != null && schedulingPolicy.isPastDeadline(dataItems.get(index))) {
+                        metrics.onDeadlineMissed();
+                    }
+                    recordCompletedWeight(index);
+                    publishProgress(index, completedCount.incrementAndGet());
+
+                    // the data item will not be accessed anymore
+                    if (dataItems instanceof StreamingDataList) {
+                        ((StreamingDataList<T>) dataItems).release(index, index + 1);
+                    }
+                }
+
+                /**
+                 * Records the number of workers waiting for a thread of the executor, if it can tell.
+                 * */
+                private void recordQueueDepth(Executor activeExecutor) {
+                    if (activeExecutor instanceof ThreadPoolExecutor) {
+                        metrics.onQueueDepth(((ThreadPoolExecutor) activeExecutor).getQueue().size());
+                    }
+                }
+
+                /**
+                 * Runs the specified runnable on the ui thread while locking/awaiting the enclosing thread,
+                 * and records the time spent waiting. If the ui thread does not run it in time, the wait is
+                 * reported as a stall and the batch goes on, the runnable still runs on the ui thread later.
+                 * */
+                private void runOnUiThreadLocked(Runnable runnable) {
+                    if (headless) {
+                        // a headless batch does not touch the ui thread
+                        runnable.run();
+                        return;
+                    }
+                    long begin = System.nanoTime();
+                    WatchedWork work = beginWatchedWork(WATCHED_UI_WAIT, 0);
+                    try {
+                        boolean ran = Loopers.runLocked(
+                            Looper.getMainLooper(),
+                            runnable,
+                            UI_WAIT_TIMEOUT_MILLIS,
+                            TimeUnit.MILLISECONDS
+                        );
+                        if (!ran && !Thread.currentThread().isInterrupted()) {
+                            reportUiStall(work);
+                        }
+                    } finally {
+                        endWatchedWork(work);
+                    }
+                    metrics.addUiBlockedNanos(System.nanoTime() - begin);
+                }
+
+                /**
+                 * Reports a timed out wait for the ui thread as a stall, unless the watchdog already did.
+                 * */
+                private void reportUiStall(@Nullable WatchedWork work) {
+                    synchronized (watchedWorks) {
+                        if (work != null) {
+                            if (work.stallReported) {
+                                return;
+                            }
+                            work.stallReported = true;
+                        }
+                    }
+                    metrics.onStall();
+                    Platform.logWarning(TAG, "Ui thread did not respond in " + UI_WAIT_TIMEOUT_MILLIS + "ms, going on without it", null);
+                }
+
+                /**
+                 * Starts the periodic checks of the watchdog, if any timeout or the stall threshold is set.
+                 *
+                 * @return the scheduled checks, to cancel when the batch ends, or null. Also null if the watchdog
+                 * of the engine no longer accepts checks, then the batch runs unwatched.
+                 * */
+                private ScheduledFuture<?> startWatchdog() {
+                    long period = Long.MAX_VALUE;
+                    for (long millis : new long[]{taskTimeoutMillis, batchTimeoutMillis, stallThresholdMillis}) {
+                        if (millis > 0) {
+                            period = Math.min(period, millis / 4);
+                        }
+                    }
+                    if (period == Long.MAX_VALUE) {
+                        return null;
+                    }
+                    period = Math.max(MIN_WATCHDOG_PERIOD_MILLIS, Math.min(period, MAX_WATCHDOG_PERIOD_MILLIS));
+                    final long batchStart = System.nanoTime();
+                    try {
+                        return activeEngine.getWatchdogExecutor().scheduleWithFixedDelay(
+                            new Runnable() {
+                                @Override
+                                public void run() {
+                                    checkWatchedWorks(batchStart);
+                                }
+                            },
+                            period,
+                            period,
+                            TimeUnit.MILLISECONDS
+                        );
+                    } catch (RejectedExecutionException e) {
+                        Platform.logWarning(TAG, "Watchdog unavailable, timeouts of the batch are not enforced", e);
+                        return null;
+                    }
+                }
+
+                /**
+                 * Runs on the watchdog thread. Cancels the batch past its timeout, interrupts the timed out
+                 * attempts, and reports the stalled ones.
+                 * */
+                private void checkWatchedWorks(long batchStart) {
+                    long now = System.nanoTime();
+                    if (batchTimeoutMillis > 0 &&
+                        !cancellationToken.isCancelled() &&
+                        now - batchStart >= TimeUnit.MILLISECONDS.toNanos(batchTimeoutMillis)) {
+                        Platform.logWarning(TAG, "Batch timed out after " + batchTimeoutMillis + "ms, cancelling it", null);
+                        metrics.onBatchTimedOut();
+                        cancel();
+                    }
+
+                    long stallThresholdNanos = TimeUnit.MILLISECONDS.toNanos(stallThresholdMillis);
+                    synchronized (watchedWorks) {
+                        for (WatchedWork work : watchedWorks) {
+                            long elapsed = now - work.startNanos;
+                            if (work.timeoutNanos > 0 && !work.timedOut && elapsed >= work.timeoutNanos) {
+                                // interrupted while registered, so the interruption cannot hit the next attempt
+                                work.timedOut = true;
+                                metrics.onTaskTimedOut();
+                                work.thread.interrupt();
+                            }
+                            if (stallThresholdNanos > 0 && !work.stallReported && elapsed >= stallThresholdNanos) {
+                                work.stallReported = true;
+                                metrics.onStall();
+                                Throwable stack = new Throwable("Stack of " + work.thread.getName());
+                                stack.setStackTrace(work.thread.getStackTrace());
+                                Platform.logWarning(
+                                    TAG,
+                                    (work.kind == WATCHED_TASK ? "Task" : "Wait for the ui thread") +
+                                        " stalled for " + TimeUnit.NANOSECONDS.toMillis(elapsed) + "ms",
+                                    stack
+                                );
+                            }
+                        }
+                    }
+                }
+
+                /**
+                 * Dismisses the dialog, and runs the short postWork on ui thread - blocks the enclosing thread.
+                 * The short postWork runs exactly once, after all the other calls of the callback.
+                 * */
+                private void finish(List<V> results, boolean completed) {
+                    runOnUiThreadLocked(
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                // stop rendering progress, if the tasks were reached
+                                if (progressPublisher != null) {
+                                    progressPublisher.flushAndStop();
+                                }
+
+                                // dismiss dialog, or never show it
+                                uiPhase = UI_PHASE_FINISHED;
+                                if (!headless) {
+                                    mainHandler.removeCallbacks(dialogShower);
+                                }
+                                if (uiAttached) {
+                                    dismissDialog();
+                                }
+
+                                // perform post
+                                // do the specified short postWork
+                                if (shortPostWorkDelivered.compareAndSet(false, true)) {
                                     workerCallBack.onShortPostWork(
                                         results,
-                                        !cancelOperations
+                                        completed
+                                    );
+                                }
+                            }
+                        }
+                    );
+                }
+
+                /**
+                 * Makes the progress bar determinate, and starts rendering the progress of the tasks.
+                 * */
+                private void initProgressUi() {
+                    // the progress of weighed data items is measured in fractions of the total weight
+                    final boolean weighted = itemWeights != null;
+                    final int progressMax = weighted ? WEIGHTED_PROGRESS_MAX : totalCount;
+                    uiProgressMax = progressMax;
+                    uiPhase = UI_PHASE_TASKS;
+
+                    // update progress bar properties.
+                    // set max, make non-indeterminate etc.
+                    // will run on ui thread.
+                    postUiUpdate(
+                        new Runnable() {
+                            @Override
+                            public void run() {
+                                // with an unknown number of data items, the progress stays indeterminate
+                                if (progressMax != DataSource.SIZE_UNKNOWN) {
+                                    progressBar.setIndeterminate(false);
+                                    progressBar.setMax(progressMax);
+                                }
+                            }
+                        }
+                    );
+
+                    // progress of the tasks is rendered at most once per display frame.
+                    // descriptors are computed on the worker threads, only for the rendered frames.
+                    final ProgressFormatter progressFormatter = new ProgressFormatter();
+                    progressPublisher = new ProgressPublisher<>(
+                        new ProgressPublisher.Renderer<TaskDescriptors>() {
+                            @Override
+                            public TaskDescriptors prepare(int activeIndex, int completedCount) {
+                                return new TaskDescriptors(
+                                    workerCallBack.taskLabelDescriptor(
+                                        dataItems,
+                                        activeIndex
+                                    ),
+                                    progressFormat == ProgressFormat.DESCRIPTOR ?
+                                        workerCallBack.taskProgressDescriptor(
+                                            dataItems,
+                                            activeIndex
+                                        ) :
+                                        null,
+                                    progressFormat == ProgressFormat.COUNT_AND_ETA ||
+                                        progressFormat == ProgressFormat.COUNT_AND_THROUGHPUT ?
+                                        progressStream.getLatest() :
+                                        null
+                                );
+                            }
+
+                            @Override
+                            public void render(TaskDescriptors descriptors,
+                                               boolean descriptorsChanged,
+                                               int activeIndex,
+                                               int completedCount) {
+                                // the views are gone while detached, or not there until the dialog is shown
+                                if (!uiAttached || progressBar == null) {
+                                    return;
+                                }
+
+                                // an estimated total may turn out to be too small
+                                if (!weighted && completedCount > progressBar.getMax()) {
+                                    progressBar.setMax(completedCount);
+                                }
+                                int total = weighted ?
+                                    totalCount :
+                                    totalCount != DataSource.SIZE_UNKNOWN ?
+                                        progressBar.getMax() :
+                                        DataSource.SIZE_UNKNOWN;
+                                int progress = weighted ?
+                                    (int) (WEIGHTED_PROGRESS_MAX * Math.min(1, (double) progressStream.getCompletedWeight() / totalWeight)) :
+                                    completedCount;
+
+                                // update label & progress descriptor to specified value, if they changed
+                                if (descriptors != null && descriptorsChanged) {
+                                    subjectDescriptionView.setText(descriptors.label);
+                                    if (progressFormat == ProgressFormat.DESCRIPTOR) {
+                                        progressDescriptionView.setText(descriptors.progress);
+                                    }
+                                }
+                                if (progressFormat == ProgressFormat.COUNT) {
+                                    progressFormatter.formatCount(completedCount, total).applyTo(progressDescriptionView);
+                                } else if (progressFormat == ProgressFormat.PERCENT) {
+                                    if (weighted) {
+                                        progressFormatter.formatPercent(progress, WEIGHTED_PROGRESS_MAX).applyTo(progressDescriptionView);
+                                    } else {
+                                        progressFormatter.formatPercent(completedCount, total).applyTo(progressDescriptionView);
+                                    }
+                                } else if (progressFormat == ProgressFormat.COUNT_AND_ETA) {
+                                    progressFormatter.formatCountAndEta(
+                                        completedCount,
+                                        total,
+                                        descriptors != null ? descriptors.snapshot.getEtaMillis() : ProgressSnapshot.ETA_UNKNOWN
+                                    ).applyTo(progressDescriptionView);
+                                } else if (progressFormat == ProgressFormat.COUNT_AND_THROUGHPUT) {
+                                    progressFormatter.formatCountAndThroughput(
+                                        completedCount,
+                                        total,
+                                        descriptors != null ? descriptors.snapshot.getThroughput() : 0
+                                    ).applyTo(progressDescriptionView);
+                                }
+
+                                // update progress bar to the number (or weight) of completed tasks
+                                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                                    progressBar.setProgress(
+                                        progress,
+                                        true
                                     );
+                                } else {
+                                    progressBar.setProgress(progress);
+                                }
+                            }
+                        }
+                    );
+                }
+
+                /**
+                 * Runs all the phases of the batch.
+                 *
+                 * @return whether the batch ran for all the input data.
+                 * */
+                @SuppressWarnings("unchecked")
+                private boolean runBatch() {
+                    metrics.onBatchStart();
+
+                    // run short preWork on ui thread - block the enclosing thread, unless it ran in start().
+                    // the short preWork will be run prior to opening the dialog.
+                    if (!shortPreWorkDone) {
+                        runOnUiThreadLocked(
+                            new Runnable() {
+                                @Override
+                                public void run() {
+                                    beginUi();
+                                }
+                            }
+                        );
+                    }
+
+                    // run long preWork on the enclosing thread.
+                    // it will run while the dialog is being opened.
+                    // progress bar will be in indeterminate state.
+                    // a cancellation interrupts it like any other task.
+                    beginInterruptibleWork();
+                    try {
+                        workerCallBack.onLongPreWork(dataItems);
+                    } catch (Throwable e) {
+                        if (!cancellationToken.isCancelled()) {
+                            throw Throwables.rethrow(e);
+                        }
+                    } finally {
+                        endInterruptibleWork();
+                    }
+
+                    // the total may only be an estimate for a streaming data source
+                    totalCount = dataItems instanceof StreamingDataList ?
+                        ((StreamingDataList<T>) dataItems).getSizeHint() :
+                        dataItems.size();
+                    weighItems();
+                    findDuplicateKeys();
+
+                    if (!headless) {
+                        initProgressUi();
+                    }
+
+                    // when the preWorks are done, run the main tasks.
+                    // each result is kept at the position of its data item, so that
+                    // the results are in input order regardless of the execution order.
+                    ResultCollector<V> resultCollector = new ResultCollector<>(
+                        totalCount,
+                        retainResults,
+                        resultConsumer,
+                        orderedResultConsumption,
+                        resultStream
+                    );
+                    restoreCheckpoint(resultCollector);
+
+                    long restoredWeight = 0;
+                    if (itemWeights != null) {
+                        for (int i = restoredIndices.nextSetBit(0); i >= 0; i = restoredIndices.nextSetBit(i + 1)) {
+                            restoredWeight += itemWeights[i];
+                        }
+                    }
+
+                    metrics.onTaskPhaseStart();
+                    progressStream.start(totalCount, restoredCount, totalWeight, restoredWeight);
+                    if (!cancellationToken.isCancelled()) {
+                        if (pipeline != null) {
+                            runPipeline(resultCollector);
+                        } else {
+                            runTasks(resultCollector);
+                        }
+                    }
+
+                    // render the final progress state, and stop listening for frames
+                    ProgressPublisher<TaskDescriptors> activePublisher = progressPublisher;
+                    if (activePublisher != null) {
+                        mainHandler.post(
+                            new Runnable() {
+                                @Override
+                                public void run() {
+                                    activePublisher.flushAndStop();
+                                }
+                            }
+                        );
+                    }
+
+                    metrics.onPostWorkStart();
+                    if (!cancellationToken.isCancelled()) {
+                        // create a results holder
+                        List<V> results = resultCollector.getResults();
+
+                        // update progress bar properties - set indeterminate
+                        // will be done in ui thread
+                        uiPhase = UI_PHASE_POST_WORK;
+                        postUiUpdate(
+                            new Runnable() {
+                                @Override
+                                public void run() {
+                                    progressBar.setIndeterminate(true);
+                                    progressDescriptionView.setText(R.string.three_dots_);
+                                    subjectDescriptionView.setText(workerCallBack.longPostWorkDescriptor());
                                 }
                             }
                         );
+
+                        // run long postWork in the enclosing thread.
+                        // it will run right after the actual batch tasks are completed.
+                        // progress bar will be in indeterminate state.
+                        workerCallBack.onLongPostWork(results);
+
+                        boolean completed = !cancellationToken.isCancelled();
+                        finish(results, completed);
+                        return completed;
+                    } else {
+                        // cancelled - the running tasks have stopped, or were abandoned
+                        finish(new ArrayList<>(0), false);
+                        return false;
+                    }
+                }
+
+                @Override
+                public void run() {
+                    boolean completed = false;
+                    ScheduledFuture<?> watchdog = null;
+                    try {
+                        watchdog = startWatchdog();
+                        completed = runBatch();
+                    } catch (Throwable e) {
+                        // a failure must not leave the dialog open forever
+                        Platform.logError(TAG, "Batch failed", e);
+                        if (!isFailureReported(e)) {
+                            reportFailure(new ItemFailure(ItemFailure.NO_INDEX, e, 1));
+                        }
+                        finish(new ArrayList<>(0), false);
+                    } finally {
+                        if (watchdog != null) {
+                            watchdog.cancel(false);
+                        }
+                        // whichever phase the batch stopped in
+                        if (dataItems instanceof StreamingDataList) {
+                            ((StreamingDataList<T>) dataItems).close();
+                        }
+                    }
+                    closeCheckpoint(completed);
+
+                    // complete the streams
+                    progressStream.finish();
+                    if (resultStream != null) {
+                        resultStream.finish(completed);
+                    }
+
+                    // report the statistics of the batch
+                    BatchStats stats = metrics.onBatchEnd(completed);
+                    if (metricsListener != null) {
+                        metricsListener.onBatchMetrics(stats);
                     }
                 }
             }
-        ).start();
+        );
+    }
+
+    /**
+     * Bind the ui of the batch to the lifecycle of the owner, e.g. the activity showing it. When the owner
+     * is destroyed, the ui is detached as by {@link #detach()}, while the batch keeps running.
+     * <br>
+     * To survive configuration changes, keep the batch worker (and a callback that does not reference the
+     * activity) in a retained scope such as a ViewModel, and {@code reattach} it to the new activity.
+     * Cancel the batch from the retained scope if it must not outlive the activity.
+     *
+     * @param owner the lifecycle owner.
+     * @return this batch worker, for chaining.
+     */
+    @MainThread
+    public BatchWorker<T, V> bindLifecycle(@NonNull LifecycleOwner owner) {
+        unbindLifecycle();
+        lifecycleOwner = owner;
+        lifecycleObserver = new LifecycleEventObserver() {
+            @Override
+            public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+                if (event == Lifecycle.Event.ON_DESTROY) {
+                    detach();
+                }
+            }
+        };
+        owner.getLifecycle().addObserver(lifecycleObserver);
+        return this;
+    }
+
+    /**
+     * Detach the ui of the batch: the built-in dialog is dismissed, and the context and the views are
+     * released. The batch keeps running, and its ui updates are dropped until it is re-attached.
+     * The callback is still called as usual.
+     */
+    @MainThread
+    public void detach() {
+        if (headless) {
+            return;
+        }
+        uiAttached = false;
+        unbindLifecycle();
+        dismissDialog();
+        classicDialog = null;
+        bottomSheetDialog = null;
+        dialogTitleView = null;
+        subjectDescriptionView = null;
+        progressBar = null;
+        progressDescriptionView = null;
+        tasksCancellationButton = null;
+        uiComponentsSelector = null;
+        context = null;
+    }
+
+    /**
+     * Re-attach a batch worker with a built-in dialog to a new context, e.g. the activity recreated after a
+     * configuration change. If the batch is running, a new dialog shows its current progress.
+     *
+     * @param context the context in which the window will appear.
+     * @param owner   the lifecycle owner to bind the ui to, see {@link #bindLifecycle(LifecycleOwner)}.
+     */
+    @MainThread
+    public void reattach(@NonNull @UiContext Context context, @NonNull LifecycleOwner owner) {
+        if (dialogMode == null) {
+            throw new IllegalStateException("The batch worker was not constructed with a built-in dialog");
+        }
+        detach();
+        this.context = context;
+        uiAttached = true;
+        bindLifecycle(owner);
+        int phase = uiPhase;
+        if (dialogShowDue && phase != UI_PHASE_IDLE && phase != UI_PHASE_FINISHED) {
+            showDialog();
+        }
+    }
+
+    /**
+     * Re-attach a batch worker with external views to new views, e.g. in the activity recreated after a
+     * configuration change. The views show the current progress of the batch.
+     *
+     * @param uiComponentsSelector container to hold external view resource ids required for publishing progress info of the tasks.
+     * @param owner                the lifecycle owner to bind the ui to, see {@link #bindLifecycle(LifecycleOwner)}.
+     */
+    @MainThread
+    public void reattach(@NonNull UiComponentsSelector uiComponentsSelector, @NonNull LifecycleOwner owner) {
+        if (headless || dialogMode != null) {
+            throw new IllegalStateException("The batch worker was not constructed with external views");
+        }
+        detach();
+        this.context = uiComponentsSelector.getParentView().getContext();
+        this.uiComponentsSelector = uiComponentsSelector;
+        initExternalUi();
+        uiAttached = true;
+        bindLifecycle(owner);
+        applyUiState();
+    }
+
+    private void unbindLifecycle() {
+        if (lifecycleOwner != null) {
+            lifecycleOwner.getLifecycle().removeObserver(lifecycleObserver);
+            lifecycleOwner = null;
+            lifecycleObserver = null;
+        }
+    }
+
+    /**
+     * Request the cancellation of the batch. No more tasks are started, and unless disabled by
+     * {@link #setInterruptOnCancel(boolean)}, the running tasks are interrupted.
+     * {@link WorkerCallBack#onShortPostWork(List, boolean)} is called once the running tasks have stopped,
+     * or the grace period set by {@link #setCancellationGracePeriod(long)} has elapsed.
+     * This is what the cancel button does.
+     */
+    public void cancel() {
+        // results of the tasks completing after a cancellation need not wait for the observer
+        if (resultStream != null) {
+            resultStream.releaseBlocking();
+        }
+        if (cancellationToken.cancel() && interruptOnCancel) {
+            synchronized (interruptibleThreads) {
+                for (Thread thread : interruptibleThreads) {
+                    thread.interrupt();
+                }
+            }
+        }
+    }
+
+    /**
+     * Re-order the pending data items of the running batch by its {@link SchedulingPolicy}, after the
+     * state the policy depends on has changed. Has no effect if no tasks are running.
+     */
+    public void reprioritize() {
+        PriorityScheduler<T> scheduler = activeScheduler;
+        if (scheduler != null) {
+            scheduler.reprioritize();
+        }
+    }
+
+    /**
+     * Token signalling the cancellation of this batch.
+     */
+    @NonNull
+    public CancellationToken getCancellationToken() {
+        return cancellationToken;
+    }
+
+    /**
+     * Failures of the batch so far. With {@link ErrorMode#COLLECT}, this holds every failed data item
+     * once the batch is over.
+     */
+    @NonNull
+    public List<ItemFailure> getFailures() {
+        synchronized (failures) {
+            return new ArrayList<>(failures);
+        }
+    }
+
+    private void reportFailure(@NonNull ItemFailure failure) {
+        synchronized (failures) {
+            failures.add(failure);
+        }
+        if (itemFailureListener != null) {
+            itemFailureListener.onItemFailed(failure);
+        }
+    }
+
+    private boolean isFailureReported(@NonNull Throwable throwable) {
+        synchronized (failures) {
+            for (ItemFailure failure : failures) {
+                if (failure.getThrowable() == throwable) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Descriptors of a progress state, computed off the ui thread.
+     */
+    private static class TaskDescriptors {
+        final String label;
+        final String progress;
+        final ProgressSnapshot snapshot;
+
+        TaskDescriptors(String label, String progress, ProgressSnapshot snapshot) {
+            this.label = label;
+            this.progress = progress;
+            this.snapshot = snapshot;
+        }
+    }
+
+    /**
+     * A data item on its way through the stages of a pipeline.
+     */
+    private static class PipelineItem {
+        final int index;
+        final Object limitKey;
+        Object value;
+        long startNanos;
+
+        PipelineItem(int index, Object value, Object limitKey) {
+            this.index = index;
+            this.value = value;
+            this.limitKey = limitKey;
+        }
+    }
+
+    /**
+     * A task attempt or a wait for the ui thread, watched by the watchdog of the batch.
+     */
+    private static class WatchedWork {
+        final int kind;
+        final Thread thread;
+        final long startNanos;
+        final long timeoutNanos;
+        volatile boolean timedOut;
+        boolean stallReported;
+
+        WatchedWork(int kind, Thread thread, long timeoutNanos) {
+            this.kind = kind;
+            this.thread = thread;
+            this.startNanos = System.nanoTime();
+            this.timeoutNanos = timeoutNanos;
+        }
     }
 
+    /**
+     * Starts the workers of a pipeline stage, see {@code runPipeline}.
+     */
+    private interface StageStarter {
+        void start(int stage);
+    }
+
+    /**
+     * A single attempt at a task, see {@code performWithRetries}.
+     */
+    private interface TaskAttempt<R> {
+        R attempt();
+    }
+
+    /**
+     * Mark the calling thread as running a task that may be interrupted on cancellation.
+     */
+    private void beginInterruptibleWork() {
+        synchronized (interruptibleThreads) {
+            interruptibleThreads.add(Thread.currentThread());
+        }
+    }
+
+    /**
+     * Unmark the calling thread, and clear an interruption meant for the task that just ended.
+     */
+    private void endInterruptibleWork() {
+        synchronized (interruptibleThreads) {
+            interruptibleThreads.remove(Thread.currentThread());
+        }
+        Thread.interrupted();
+    }
+
+    /**
+     * Register work of the calling thread with the watchdog, unless there is nothing to watch it for.
+     *
+     * @param kind          {@code WATCHED_TASK} or {@code WATCHED_UI_WAIT}, reported with a stall.
+     * @param timeoutMillis timeout of the work, or 0 to only watch it for stalls.
+     * @return the registered work, to pass to {@link #endWatchedWork(WatchedWork)}, or null.
+     */
+    @Nullable
+    private WatchedWork beginWatchedWork(int kind, long timeoutMillis) {
+        if (timeoutMillis <= 0 && stallThresholdMillis <= 0) {
+            return null;
+        }
+        WatchedWork work = new WatchedWork(
+            kind,
+            Thread.currentThread(),
+            TimeUnit.MILLISECONDS.toNanos(timeoutMillis)
+        );
+        synchronized (watchedWorks) {
+            watchedWorks.add(work);
+        }
+        return work;
+    }
+
+    /**
+     * Unregister the work, and clear an interruption meant for it if it timed out.
+     */
+    private void endWatchedWork(@Nullable WatchedWork work) {
+        if (work == null) {
+            return;
+        }
+        synchronized (watchedWorks) {
+            watchedWorks.remove(work);
+        }
+        if (work.timedOut) {
+            Thread.interrupted();
+        }
+    }
 
     public TextView getDialogTitleView() {
         return dialogTitleView;
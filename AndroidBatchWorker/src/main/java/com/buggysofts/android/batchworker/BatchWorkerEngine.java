@@ -0,0 +1,189 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Owns the threads that run the batches of one or more {@link BatchWorker}s.
+ * <br>
+ * An engine has two bounded pools of named, background priority threads. One of them drives the
+ * batches, at most {@code maxConcurrentBatches} of them at a time - the rest are queued and started
+ * in submission order. The other one is shared by the parallel tasks of all the running batches.
+ * Threads are reused across batches, and are released after some idle time. A single watchdog thread
+ * enforces the timeouts of the running batches.
+ * <br>
+ * Unless another engine is set by {@link BatchWorker#setEngine(BatchWorkerEngine)}, batch workers
+ * use the engine returned by {@link #getDefault()}.
+ */
+public class BatchWorkerEngine {
+    private static final long IDLE_THREAD_KEEP_ALIVE_SECONDS = 30;
+    private static final AtomicInteger engineCount = new AtomicInteger(0);
+    private static BatchWorkerEngine defaultEngine;
+
+    private final ThreadPoolExecutor batchExecutor;
+    private final ThreadPoolExecutor workerExecutor;
+    private final ScheduledThreadPoolExecutor watchdogExecutor;
+
+    /**
+     * Construct an engine.
+     *
+     * @param maxConcurrentBatches maximum number of batches to run at the same time, the others wait in a queue.
+     * @param workerPoolSize       maximum number of threads to run the parallel tasks of the batches on.
+     */
+    public BatchWorkerEngine(int maxConcurrentBatches, int workerPoolSize) {
+        if (maxConcurrentBatches < 1 || workerPoolSize < 1) {
+            throw new IllegalArgumentException("maxConcurrentBatches and workerPoolSize must be at least 1");
+        }
+        String namePrefix = "BatchWorkerEngine-" + engineCount.incrementAndGet();
+        this.workerExecutor = createExecutor(workerPoolSize, namePrefix + "-worker-", null);
+        this.watchdogExecutor = new ScheduledThreadPoolExecutor(1, new BackgroundThreadFactory(namePrefix + "-watchdog-"));
+        this.watchdogExecutor.setKeepAliveTime(IDLE_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        this.watchdogExecutor.allowCoreThreadTimeOut(true);
+        this.watchdogExecutor.setRemoveOnCancelPolicy(true);
+
+        // running and queued batches still need the worker pool and the watchdog after a shutdown,
+        // so they are shut down only once the last batch is done
+        this.batchExecutor = createExecutor(
+            maxConcurrentBatches,
+            namePrefix + "-batch-",
+            new Runnable() {
+                @Override
+                public void run() {
+                    workerExecutor.shutdown();
+                    watchdogExecutor.shutdown();
+                }
+            }
+        );
+    }
+
+    /**
+     * Get the process-wide default engine. It runs at most 2 batches at a time,
+     * and shares a worker pool as large as the number of available processors.
+     * If the default engine was shut down, a new one is created.
+     */
+    @NonNull
+    public static synchronized BatchWorkerEngine getDefault() {
+        if (defaultEngine == null || defaultEngine.isShutdown()) {
+            defaultEngine = new BatchWorkerEngine(
+                2,
+                Runtime.getRuntime().availableProcessors()
+            );
+        }
+        return defaultEngine;
+    }
+
+    /**
+     * Stop accepting new batches. Running and already queued batches are completed, the worker
+     * pool and the watchdog of the engine are shut down after the last of them is done.
+     */
+    public void shutdown() {
+        batchExecutor.shutdown();
+    }
+
+    /**
+     * Whether {@link #shutdown()} was called on this engine.
+     */
+    public boolean isShutdown() {
+        return batchExecutor.isShutdown();
+    }
+
+    /**
+     * Wait for the running and queued batches to finish, after a {@link #shutdown()} request.
+     *
+     * @return true if the engine terminated, false if the timeout elapsed before that.
+     */
+    public boolean awaitTermination(long timeout, @NonNull TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        return batchExecutor.awaitTermination(timeout, unit) &&
+            workerExecutor.awaitTermination(
+                Math.max(0, deadline - System.nanoTime()),
+                TimeUnit.NANOSECONDS
+            );
+    }
+
+    /**
+     * Maximum number of threads in the shared worker pool.
+     */
+    public int getWorkerPoolSize() {
+        return workerExecutor.getMaximumPoolSize();
+    }
+
+    /**
+     * Queue a batch for execution.
+     */
+    void submitBatch(@NonNull Runnable batch) {
+        batchExecutor.execute(batch);
+    }
+
+    /**
+     * Executor for the parallel tasks of the batches.
+     */
+    @NonNull
+    Executor getWorkerExecutor() {
+        return workerExecutor;
+    }
+
+    /**
+     * Executor for the periodic checks of the watchdog, which must be quick.
+     */
+    @NonNull
+    ScheduledExecutorService getWatchdogExecutor() {
+        return watchdogExecutor;
+    }
+
+    private static ThreadPoolExecutor createExecutor(int size, String namePrefix, @Nullable Runnable onTerminated) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            size,
+            size,
+            IDLE_THREAD_KEEP_ALIVE_SECONDS,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new BackgroundThreadFactory(namePrefix)
+        ) {
+            @Override
+            protected void terminated() {
+                if (onTerminated != null) {
+                    onTerminated.run();
+                }
+            }
+        };
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static class BackgroundThreadFactory implements ThreadFactory {
+        private final String namePrefix;
+        private final AtomicInteger threadCount;
+
+        BackgroundThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+            this.threadCount = new AtomicInteger(0);
+        }
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        // keep the batches from competing with the ui thread
+                        Platform.setBackgroundThreadPriority();
+                        runnable.run();
+                    }
+                },
+                namePrefix + threadCount.incrementAndGet()
+            );
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
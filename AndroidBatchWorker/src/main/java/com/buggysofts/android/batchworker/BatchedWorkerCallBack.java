@@ -0,0 +1,28 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.util.List;
+
+/**
+ * A {@link WorkerCallBack} that performs the tasks of consecutive data items together, in chunks.
+ * This allows amortizing the per-call overhead of a task, e.g. running one database transaction
+ * or one network request for a whole chunk of data items.
+ * <br>
+ * When a batch worker is given a callback of this type, it calls {@link #performChunk(List, int, int)}
+ * instead of {@link #performTask(List, int)}. The size of the chunks can be set by
+ * {@link BatchWorker#setChunkSize(int)}, by default it is adapted to the measured duration of the tasks.
+ */
+public interface BatchedWorkerCallBack<T, V> extends WorkerCallBack<T, V> {
+    /**
+     * Perform the actual task for a chunk of consecutive items of the input data list.
+     *
+     * @param dataList The input data list passed to the constructor.
+     * @param from     Index of the first data item of the chunk (inclusive).
+     * @param to       Index after the last data item of the chunk (exclusive).
+     * @return A list containing the output of each data item of the chunk, in order. Must be of size {@code to - from}.
+     */
+    @WorkerThread
+    public List<V> performChunk(@NonNull List<T> dataList, int from, int to);
+}
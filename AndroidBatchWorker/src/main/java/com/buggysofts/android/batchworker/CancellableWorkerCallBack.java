@@ -0,0 +1,33 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.util.List;
+
+/**
+ * A {@link WorkerCallBack} whose tasks receive the {@link CancellationToken} of the batch, so that a
+ * long running task can notice the cancellation and return early instead of running to completion.
+ */
+public abstract class CancellableWorkerCallBack<T, V> implements WorkerCallBack<T, V> {
+    /**
+     * Perform the actual task for each item of the input data list.
+     *
+     * @param dataList          The input data list passed to the constructor.
+     * @param activeDataIndex   Index of the data item for which the task is going to be performed.
+     * @param cancellationToken Token signalling the cancellation of the batch.
+     */
+    @WorkerThread
+    public abstract V performTask(@NonNull List<T> dataList,
+                                  int activeDataIndex,
+                                  @NonNull CancellationToken cancellationToken);
+
+    /**
+     * Performs the task with a token that is never cancelled.
+     * Batch workers call {@link #performTask(List, int, CancellationToken)} instead.
+     */
+    @Override
+    public final V performTask(@NonNull List<T> dataList, int activeDataIndex) {
+        return performTask(dataList, activeDataIndex, new CancellationToken());
+    }
+}
@@ -0,0 +1,96 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Signals the cancellation of a batch to its tasks. Long running tasks should check
+ * {@link #isCancelled()} (or call {@link #throwIfCancelled()}) regularly, or register a listener
+ * to abort blocking operations, e.g. by closing a stream.
+ */
+public class CancellationToken {
+    private final List<Runnable> onCancelListeners;
+    private volatile boolean cancelled;
+    private volatile long cancellationTimeNanos;
+
+    CancellationToken() {
+        this.onCancelListeners = new ArrayList<>(0);
+        this.cancelled = false;
+    }
+
+    /**
+     * Whether the cancellation of the batch was requested.
+     */
+    @AnyThread
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Throw a {@link CancellationException} if the cancellation of the batch was requested.
+     */
+    @AnyThread
+    public void throwIfCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Batch was cancelled");
+        }
+    }
+
+    /**
+     * Register a listener to run on the cancelling thread when the cancellation is requested.
+     * If the cancellation was already requested, the listener runs right away on the calling thread.
+     */
+    @AnyThread
+    public void addOnCancelListener(@NonNull Runnable listener) {
+        synchronized (onCancelListeners) {
+            if (!cancelled) {
+                onCancelListeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    /**
+     * Unregister a listener registered by {@link #addOnCancelListener(Runnable)}.
+     */
+    @AnyThread
+    public void removeOnCancelListener(@NonNull Runnable listener) {
+        synchronized (onCancelListeners) {
+            onCancelListeners.remove(listener);
+        }
+    }
+
+    /**
+     * Mark the cancellation, and run the listeners.
+     *
+     * @return true if this call cancelled the token, false if it was already cancelled.
+     */
+    boolean cancel() {
+        List<Runnable> listeners;
+        synchronized (onCancelListeners) {
+            if (cancelled) {
+                return false;
+            }
+            cancellationTimeNanos = System.nanoTime();
+            cancelled = true;
+            listeners = new ArrayList<>(onCancelListeners);
+            onCancelListeners.clear();
+        }
+        for (Runnable listener : listeners) {
+            listener.run();
+        }
+        return true;
+    }
+
+    /**
+     * {@link System#nanoTime()} of the cancellation, only valid if cancelled.
+     */
+    long getCancellationTimeNanos() {
+        return cancellationTimeNanos;
+    }
+}
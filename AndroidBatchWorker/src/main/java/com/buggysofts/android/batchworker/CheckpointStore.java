@@ -0,0 +1,45 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Persists the results of the completed data items of a batch, so that a batch interrupted by a
+ * process death can be resumed without performing those tasks again.
+ * See {@link BatchWorker#setCheckpointStore(CheckpointStore, ResultSerializer)}.
+ * <br>
+ * Data items are identified by their index, so a resumed batch must have the same input data, in
+ * the same order.
+ */
+public interface CheckpointStore {
+    /**
+     * Load the checkpointed results, keyed by the index of their data item.
+     * Called once, on the batch thread, before the tasks start.
+     */
+    @NonNull
+    @WorkerThread
+    public Map<Integer, byte[]> load() throws IOException;
+
+    /**
+     * Record the serialized result of a completed data item. Called from the worker threads, possibly
+     * concurrently. Implementations should buffer the records, instead of writing each of them through.
+     */
+    @WorkerThread
+    public void append(int index, @NonNull byte[] result) throws IOException;
+
+    /**
+     * Write the buffered records through, and release the resources of the store.
+     * Called when the batch is over, unless it completed and the store was cleared.
+     */
+    @WorkerThread
+    public void close() throws IOException;
+
+    /**
+     * Remove all the checkpointed results. Called when the batch completed, as there is nothing to resume.
+     */
+    @WorkerThread
+    public void clear() throws IOException;
+}
@@ -0,0 +1,39 @@
+package com.buggysofts.android.batchworker;
+
+/**
+ * Decides the size of the chunks of a {@link BatchedWorkerCallBack}. A fixed size is used as is,
+ * an adaptive size is steered towards chunks that take about {@link #TARGET_CHUNK_NANOS} to perform.
+ */
+class ChunkSizer {
+    static final long TARGET_CHUNK_NANOS = 100_000_000L;
+    static final int MAX_ADAPTIVE_CHUNK_SIZE = 4096;
+    private static final int INITIAL_ADAPTIVE_CHUNK_SIZE = 8;
+
+    private final boolean adaptive;
+    private volatile int chunkSize;
+
+    ChunkSizer(int fixedChunkSize) {
+        this.adaptive = fixedChunkSize == BatchWorker.CHUNK_SIZE_ADAPTIVE;
+        this.chunkSize = adaptive ? INITIAL_ADAPTIVE_CHUNK_SIZE : fixedChunkSize;
+    }
+
+    int nextChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Record the duration of a performed chunk.
+     */
+    void record(int size, long elapsedNanos) {
+        if (!adaptive || size <= 0) {
+            return;
+        }
+        long perItemNanos = Math.max(1, elapsedNanos / size);
+        long idealSize = TARGET_CHUNK_NANOS / perItemNanos;
+
+        // move half way towards the ideal size, to smooth out outliers
+        int current = chunkSize;
+        long next = (current + idealSize) / 2;
+        chunkSize = (int) Math.max(1, Math.min(MAX_ADAPTIVE_CHUNK_SIZE, next));
+    }
+}
@@ -0,0 +1,130 @@
+package com.buggysofts.android.batchworker;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.PowerManager;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Tunes the number of workers of a batch by hill climbing on the measured throughput. The limit
+ * keeps moving in the same direction while the throughput improves, and reverses when it does not.
+ * When the per-item latency degrades without a throughput gain (i.e. the tasks contend), the limit
+ * is halved. The limit is further capped under thermal pressure and in battery saver mode.
+ * <br>
+ * Only the thread supervising the workers updates the controller, the limit is read by all of them.
+ */
+class ConcurrencyController {
+    // minimum duration of a sample
+    private static final long SAMPLE_INTERVAL_NANOS = 250_000_000L;
+
+    // throughput changes smaller than this are noise
+    private static final double SIGNIFICANT_CHANGE = 0.05;
+
+    // per-item latency above this multiple of the best one means the tasks contend
+    private static final double LATENCY_DEGRADATION = 2.0;
+
+    private final int maxLimit;
+    private final PowerManager powerManager;
+    private volatile int limit;
+    private int direction;
+
+    private long lastSampleNanos;
+    private int lastCompletedCount;
+    private long lastTaskNanos;
+    private double lastThroughput;
+    private double bestLatencyNanos;
+
+    /**
+     * @param maxLimit upper bound of the number of workers.
+     * @param context  context to observe the device state with, or null to ignore it.
+     */
+    ConcurrencyController(int maxLimit, @Nullable Context context) {
+        this.maxLimit = maxLimit;
+        this.powerManager = context != null ?
+            (PowerManager) context.getApplicationContext().getSystemService(Context.POWER_SERVICE) :
+            null;
+        this.limit = Math.max(1, Math.min(maxLimit, getDeviceCeiling()) / 2);
+        this.direction = 1;
+        this.lastThroughput = 0;
+        this.bestLatencyNanos = Double.MAX_VALUE;
+    }
+
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * Take a sample of the progress of the batch, and adjust the limit if the sample is long enough.
+     */
+    void update(BatchMetrics metrics) {
+        long now = System.nanoTime();
+        int completedCount = metrics.getCompletedItemCount();
+        long taskNanos = metrics.getTotalTaskNanos();
+        if (lastSampleNanos == 0) {
+            startSample(now, completedCount, taskNanos);
+            return;
+        }
+
+        // wait until each worker has completed an item on average, or the sample is meaningless
+        int items = completedCount - lastCompletedCount;
+        if (now - lastSampleNanos < SAMPLE_INTERVAL_NANOS || items < limit) {
+            return;
+        }
+        double throughput = items * 1e9 / (now - lastSampleNanos);
+        double latencyNanos = (double) (taskNanos - lastTaskNanos) / items;
+        startSample(now, completedCount, taskNanos);
+
+        int next;
+        if (latencyNanos > bestLatencyNanos * LATENCY_DEGRADATION &&
+            throughput <= lastThroughput * (1 + SIGNIFICANT_CHANGE)) {
+            // more workers only made each task slower, back off
+            next = limit / 2;
+            direction = 1;
+        } else if (throughput > lastThroughput * (1 + SIGNIFICANT_CHANGE)) {
+            // the last move paid off, keep going
+            next = limit + direction;
+        } else if (throughput < lastThroughput * (1 - SIGNIFICANT_CHANGE)) {
+            // the last move hurt, go back
+            direction = -direction;
+            next = limit + direction;
+        } else {
+            // no difference, prefer fewer workers
+            direction = -1;
+            next = limit - 1;
+        }
+        bestLatencyNanos = Math.min(bestLatencyNanos, latencyNanos);
+        lastThroughput = throughput;
+        limit = Math.max(1, Math.min(next, Math.min(maxLimit, getDeviceCeiling())));
+    }
+
+    private void startSample(long now, int completedCount, long taskNanos) {
+        lastSampleNanos = now;
+        lastCompletedCount = completedCount;
+        lastTaskNanos = taskNanos;
+    }
+
+    /**
+     * @return the maximum number of workers the device state allows.
+     */
+    private int getDeviceCeiling() {
+        int ceiling = maxLimit;
+        if (powerManager == null) {
+            return ceiling;
+        }
+        if (powerManager.isPowerSaveMode()) {
+            ceiling = Math.max(1, maxLimit / 2);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            int thermalStatus = powerManager.getCurrentThermalStatus();
+            if (thermalStatus >= PowerManager.THERMAL_STATUS_SEVERE) {
+                ceiling = 1;
+            } else if (thermalStatus >= PowerManager.THERMAL_STATUS_MODERATE) {
+                ceiling = Math.min(ceiling, Math.max(1, maxLimit / 2));
+            } else if (thermalStatus >= PowerManager.THERMAL_STATUS_LIGHT) {
+                ceiling = Math.min(ceiling, Math.max(1, maxLimit * 3 / 4));
+            }
+        }
+        return ceiling;
+    }
+}
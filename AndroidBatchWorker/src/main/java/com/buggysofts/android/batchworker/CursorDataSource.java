@@ -0,0 +1,64 @@
+package com.buggysofts.android.batchworker;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+/**
+ * A {@link DataSource} that maps the rows of a {@link Cursor} to data items, one row at a time.
+ * The cursor is closed when the batch is over.
+ */
+public class CursorDataSource<T> implements DataSource<T> {
+    /**
+     * Maps the current row of a cursor to a data item.
+     */
+    public interface RowMapper<T> {
+        @WorkerThread
+        public T map(@NonNull Cursor cursor);
+    }
+
+    private final Cursor cursor;
+    private final RowMapper<T> rowMapper;
+    private boolean movedToNext;
+    private boolean hasNext;
+
+    /**
+     * @param cursor    cursor positioned before its first row.
+     * @param rowMapper maps each row of the cursor to a data item.
+     */
+    public CursorDataSource(@NonNull Cursor cursor, @NonNull RowMapper<T> rowMapper) {
+        this.cursor = cursor;
+        this.rowMapper = rowMapper;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (!movedToNext) {
+            hasNext = cursor.moveToNext();
+            movedToNext = true;
+        }
+        return hasNext;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new IllegalStateException("No more rows in cursor");
+        }
+        movedToNext = false;
+        return rowMapper.map(cursor);
+    }
+
+    @Override
+    public int getSizeHint() {
+        return cursor.getCount();
+    }
+
+    @Override
+    public void close() {
+        if (!cursor.isClosed()) {
+            cursor.close();
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.WorkerThread;
+
+/**
+ * A source of data items that are pulled lazily, one by one, as the batch needs them.
+ * Use it instead of a fully materialized list when the input is too large to keep in memory,
+ * e.g. the rows of a huge cursor or the entries of a large directory listing.
+ * <br>
+ * The methods of a data source are called from the worker threads of the batch, one call at a time.
+ */
+public interface DataSource<T> {
+    /**
+     * Size hint for a data source that does not know the number of its data items.
+     */
+    public static final int SIZE_UNKNOWN = -1;
+
+    /**
+     * Whether there are more data items to pull.
+     */
+    @WorkerThread
+    public boolean hasNext();
+
+    /**
+     * Pull the next data item.
+     */
+    @WorkerThread
+    public T next();
+
+    /**
+     * Expected total number of data items, or {@link #SIZE_UNKNOWN}. The hint is used for progress
+     * reporting only, it may be an estimate.
+     */
+    public int getSizeHint();
+
+    /**
+     * Release the resources held by the data source. Called once, when the batch is over.
+     */
+    @WorkerThread
+    public void close();
+}
@@ -0,0 +1,182 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * An on-disk {@link ResultCache}, keeping each serialized result in its own file, named after a hash
+ * of {@code key.toString()}. When the total size of the files exceeds a maximum, the least recently
+ * used files are deleted. Usually the next tier of a {@link LruResultCache}.
+ * <br>
+ * Failing disk operations are logged, and count as misses.
+ */
+public class DiskResultCache<K, V> implements ResultCache<K, V> {
+    private static final String TAG = "DiskResultCache";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private final File directory;
+    private final long maxBytes;
+    private final ResultSerializer<V> serializer;
+    private long totalBytes;
+
+    /**
+     * @param directory  directory to keep the results in, e.g. in {@code context.getCacheDir()}. Must not be shared.
+     * @param maxBytes   maximum total size of the cached results.
+     * @param serializer converts the results to bytes and back.
+     */
+    public DiskResultCache(@NonNull File directory, long maxBytes, @NonNull ResultSerializer<V> serializer) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.serializer = serializer;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Platform.logWarning(TAG, "Could not create " + directory, null);
+        }
+        this.totalBytes = 0;
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (isTempFile(file)) {
+                    // left over by a put that did not complete
+                    file.delete();
+                } else {
+                    totalBytes += file.length();
+                }
+            }
+        }
+    }
+
+    @Nullable
+    @Override
+    public V get(@NonNull K key) {
+        File file = fileOf(key);
+        synchronized (this) {
+            if (!file.isFile()) {
+                return null;
+            }
+            // mark as recently used
+            file.setLastModified(System.currentTimeMillis());
+        }
+        try (FileInputStream inputStream = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int count = inputStream.read(bytes, read, bytes.length - read);
+                if (count < 0) {
+                    return null;
+                }
+                read += count;
+            }
+            return serializer.deserialize(bytes);
+        } catch (IOException e) {
+            Platform.logWarning(TAG, "Could not read the cached result of " + key, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void put(@NonNull K key, @NonNull V result) {
+        byte[] bytes = serializer.serialize(result);
+        File file = fileOf(key);
+        File tempFile = null;
+        try {
+            // concurrent puts of the same key must not write to the same file
+            tempFile = File.createTempFile(file.getName(), TEMP_SUFFIX, directory);
+            try (FileOutputStream outputStream = new FileOutputStream(tempFile)) {
+                outputStream.write(bytes);
+            }
+            synchronized (this) {
+                long previousBytes = file.length();
+                if (!tempFile.renameTo(file)) {
+                    throw new IOException("Could not rename " + tempFile);
+                }
+                totalBytes += bytes.length - previousBytes;
+                if (totalBytes > maxBytes) {
+                    evict();
+                }
+            }
+        } catch (IOException e) {
+            Platform.logWarning(TAG, "Could not cache the result of " + key, e);
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Delete all the cached results.
+     */
+    public synchronized void clear() {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!isTempFile(file)) {
+                    file.delete();
+                }
+            }
+        }
+        totalBytes = 0;
+    }
+
+    private void evict() {
+        // the temp files of puts in progress are not counted, and must be left alone
+        File[] files = directory.listFiles(
+            new FileFilter() {
+                @Override
+                public boolean accept(File file) {
+                    return !isTempFile(file);
+                }
+            }
+        );
+        if (files == null) {
+            return;
+        }
+        Arrays.sort(
+            files,
+            new Comparator<File>() {
+                @Override
+                public int compare(File first, File second) {
+                    return Long.compare(first.lastModified(), second.lastModified());
+                }
+            }
+        );
+        for (int i = 0; i < files.length && totalBytes > maxBytes; ++i) {
+            long length = files[i].length();
+            if (files[i].delete()) {
+                totalBytes -= length;
+            }
+        }
+    }
+
+    private static boolean isTempFile(File file) {
+        return file.getName().endsWith(TEMP_SUFFIX);
+    }
+
+    private File fileOf(@NonNull K key) {
+        return new File(directory, hash(key.toString()));
+    }
+
+    private static String hash(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes(Charset.forName("UTF-8")));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16));
+                builder.append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
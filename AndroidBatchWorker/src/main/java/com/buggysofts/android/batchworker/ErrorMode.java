@@ -0,0 +1,17 @@
+package com.buggysofts.android.batchworker;
+
+/**
+ * What a batch does when the task of a data item fails (after its retries, if any).
+ */
+public enum ErrorMode {
+    /**
+     * Stop the batch. The dialog is dismissed, and the short postWork is called as not completed.
+     */
+    FAIL_FAST,
+
+    /**
+     * Report the failure, and continue with the rest of the data items. The result of a failed
+     * data item is null.
+     */
+    COLLECT
+}
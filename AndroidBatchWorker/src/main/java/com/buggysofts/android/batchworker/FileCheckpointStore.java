@@ -0,0 +1,133 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link CheckpointStore} backed by an append-only file. Each record is the index of a data item
+ * followed by its length-prefixed result. Records are buffered, and written through after every
+ * {@code flushEveryRecords} records or {@code flushIntervalMillis} milliseconds, whichever comes first.
+ * <br>
+ * A record cut short by a process death, or a corrupt one, ends the valid checkpoint: it and the records
+ * after it are dropped on load, and their data items are performed again.
+ */
+public class FileCheckpointStore implements CheckpointStore {
+    private static final int DEFAULT_FLUSH_EVERY_RECORDS = 256;
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1_000L;
+
+    // the index and the length of the result
+    private static final int RECORD_HEADER_BYTES = 8;
+
+    private final File file;
+    private final int flushEveryRecords;
+    private final long flushIntervalNanos;
+
+    private DataOutputStream outputStream;
+    private int unflushedRecords;
+    private long lastFlushNanos;
+
+    /**
+     * @param file the file to keep the checkpoints in, e.g. in {@code context.getFilesDir()}.
+     *             Use a distinct file for each batch that may be resumed.
+     */
+    public FileCheckpointStore(@NonNull File file) {
+        this(file, DEFAULT_FLUSH_EVERY_RECORDS, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    /**
+     * @param file                the file to keep the checkpoints in.
+     * @param flushEveryRecords   maximum number of buffered records.
+     * @param flushIntervalMillis maximum time a record stays buffered, checked when appending.
+     */
+    public FileCheckpointStore(@NonNull File file, int flushEveryRecords, long flushIntervalMillis) {
+        this.file = file;
+        this.flushEveryRecords = Math.max(1, flushEveryRecords);
+        this.flushIntervalNanos = flushIntervalMillis * 1_000_000L;
+    }
+
+    @NonNull
+    @Override
+    public synchronized Map<Integer, byte[]> load() throws IOException {
+        Map<Integer, byte[]> results = new HashMap<>();
+        if (!file.exists()) {
+            return results;
+        }
+        long fileLength = file.length();
+        long validLength = 0;
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (fileLength - validLength >= RECORD_HEADER_BYTES) {
+                int index = inputStream.readInt();
+                int length = inputStream.readInt();
+                if (index < 0 || length < 0 || length > fileLength - validLength - RECORD_HEADER_BYTES) {
+                    // a corrupt or cut short record, which must not be allocated for
+                    break;
+                }
+                byte[] result = new byte[length];
+                inputStream.readFully(result);
+                results.put(index, result);
+                validLength += RECORD_HEADER_BYTES + length;
+            }
+        } catch (EOFException e) {
+            // the file shrank while loading, keep what was read
+        }
+
+        // drop the invalid tail, so the records appended from now on follow the valid ones
+        if (validLength < fileLength) {
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.setLength(validLength);
+            }
+        }
+        return results;
+    }
+
+    @Override
+    public synchronized void append(int index, @NonNull byte[] result) throws IOException {
+        if (outputStream == null) {
+            outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+            lastFlushNanos = System.nanoTime();
+        }
+        outputStream.writeInt(index);
+        outputStream.writeInt(result.length);
+        outputStream.write(result);
+        if (++unflushedRecords >= flushEveryRecords ||
+            System.nanoTime() - lastFlushNanos >= flushIntervalNanos) {
+            flush();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (outputStream != null) {
+            outputStream.close();
+            outputStream = null;
+        }
+    }
+
+    private void flush() throws IOException {
+        if (outputStream != null) {
+            outputStream.flush();
+            unflushedRecords = 0;
+            lastFlushNanos = System.nanoTime();
+        }
+    }
+
+    @Override
+    public synchronized void clear() throws IOException {
+        close();
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Could not delete " + file);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.buggysofts.android.batchworker;
+
+/**
+ * The pending task of a data item, which other tasks of the same key wait for instead of performing
+ * it again, see {@link InFlightRegistry}.
+ */
+class InFlightCall<V> {
+    private boolean done;
+    private boolean abandoned;
+    private V result;
+    private Throwable failure;
+
+    synchronized void complete(V result) {
+        this.result = result;
+        this.done = true;
+        notifyAll();
+    }
+
+    synchronized void fail(Throwable failure) {
+        this.failure = failure;
+        this.done = true;
+        notifyAll();
+    }
+
+    /**
+     * The task was given up, e.g. its batch was cancelled. The waiting tasks must perform it themselves.
+     */
+    synchronized void abandon() {
+        this.abandoned = true;
+        this.done = true;
+        notifyAll();
+    }
+
+    /**
+     * Wait for the task to end.
+     *
+     * @return false if the task was abandoned.
+     */
+    synchronized boolean await() throws InterruptedException {
+        while (!done) {
+            wait();
+        }
+        return !abandoned;
+    }
+
+    /**
+     * @return the result of the ended task, or throws its failure.
+     */
+    synchronized V get() {
+        if (failure != null) {
+            throw Throwables.rethrow(failure);
+        }
+        return result;
+    }
+}
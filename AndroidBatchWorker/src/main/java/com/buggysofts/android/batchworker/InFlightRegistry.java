@@ -0,0 +1,38 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces the tasks of concurrent batches that are running for the same data item, see
+ * {@link BatchWorker#setDeduplication(KeyExtractor, InFlightRegistry)}. While the task of a key is
+ * running in one batch, the other batches wait for its result instead of performing it again.
+ * <br>
+ * Only running tasks are registered, a completed task is forgotten right away - combine with a
+ * {@link ResultCache} to also reuse completed results. Keys must identify the task, not only the data
+ * item, so use one registry (e.g. a static one, to cover the whole process) per kind of task.
+ */
+public class InFlightRegistry<K, V> {
+    private final ConcurrentHashMap<K, InFlightCall<V>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * Register a call for the key, unless there is one already.
+     *
+     * @return the running call of the key, or null if the given call was registered.
+     */
+    InFlightCall<V> register(@NonNull K key, @NonNull InFlightCall<V> call) {
+        return calls.putIfAbsent(key, call);
+    }
+
+    void unregister(@NonNull K key, @NonNull InFlightCall<V> call) {
+        calls.remove(key, call);
+    }
+
+    /**
+     * Number of tasks currently running, across all the batches using this registry.
+     */
+    public int size() {
+        return calls.size();
+    }
+}
@@ -0,0 +1,51 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+
+/**
+ * A failure of a batch, see {@link BatchWorker#setItemFailureListener(ItemFailureListener)}.
+ */
+public class ItemFailure {
+    /**
+     * Index of a failure that does not belong to a single data item, e.g. a failure of the preWork.
+     */
+    public static final int NO_INDEX = -1;
+
+    private final int index;
+    private final Throwable throwable;
+    private final int attemptCount;
+
+    ItemFailure(int index, @NonNull Throwable throwable, int attemptCount) {
+        this.index = index;
+        this.throwable = throwable;
+        this.attemptCount = attemptCount;
+    }
+
+    /**
+     * Index of the failed data item, or {@link #NO_INDEX}.
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * The failure of the last attempt.
+     */
+    @NonNull
+    public Throwable getThrowable() {
+        return throwable;
+    }
+
+    /**
+     * Number of attempts made, including the first one.
+     */
+    public int getAttemptCount() {
+        return attemptCount;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "ItemFailure{index=" + index + ", attempts=" + attemptCount + ", throwable=" + throwable + "}";
+    }
+}
@@ -0,0 +1,17 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+/**
+ * Receives the failures of a batch as they happen.
+ */
+public interface ItemFailureListener {
+    /**
+     * In parallel mode, failures may be reported by several worker threads at the same time.
+     *
+     * @param failure the failure, with the index of the failed data item.
+     */
+    @WorkerThread
+    public void onItemFailed(@NonNull ItemFailure failure);
+}
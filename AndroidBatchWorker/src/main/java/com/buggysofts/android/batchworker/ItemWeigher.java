@@ -0,0 +1,12 @@
+package com.buggysofts.android.batchworker;
+
+/**
+ * Estimates the cost of the task of a data item, see {@link BatchWorker#setItemWeigher(ItemWeigher, boolean)}.
+ */
+public interface ItemWeigher<T> {
+    /**
+     * @return the weight of the data item in any unit proportional to the duration of its task,
+     * e.g. its size in bytes. Must not be negative.
+     */
+    public long getWeight(T dataItem);
+}
@@ -0,0 +1,49 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+
+import java.util.Iterator;
+
+/**
+ * A {@link DataSource} that pulls the data items from an {@link Iterator}.
+ */
+public class IteratorDataSource<T> implements DataSource<T> {
+    private final Iterator<T> iterator;
+    private final int sizeHint;
+
+    /**
+     * @param iterator iterator over the data items.
+     * @param sizeHint expected number of data items, or {@link DataSource#SIZE_UNKNOWN}.
+     */
+    public IteratorDataSource(@NonNull Iterator<T> iterator, int sizeHint) {
+        this.iterator = iterator;
+        this.sizeHint = sizeHint;
+    }
+
+    /**
+     * @param iterator iterator over the data items, the number of which is unknown.
+     */
+    public IteratorDataSource(@NonNull Iterator<T> iterator) {
+        this(iterator, SIZE_UNKNOWN);
+    }
+
+    @Override
+    public boolean hasNext() {
+        return iterator.hasNext();
+    }
+
+    @Override
+    public T next() {
+        return iterator.next();
+    }
+
+    @Override
+    public int getSizeHint() {
+        return sizeHint;
+    }
+
+    @Override
+    public void close() {
+        // nothing to release
+    }
+}
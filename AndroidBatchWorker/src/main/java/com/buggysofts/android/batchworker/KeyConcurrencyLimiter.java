@@ -0,0 +1,45 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Limits the number of tasks running at the same time for each key, e.g. per host or per storage
+ * volume. Keys are only tracked while they have running tasks.
+ */
+class KeyConcurrencyLimiter {
+    private final int maxConcurrentPerKey;
+    private final Map<Object, Integer> runningCounts;
+
+    KeyConcurrencyLimiter(int maxConcurrentPerKey) {
+        this.maxConcurrentPerKey = maxConcurrentPerKey;
+        this.runningCounts = new HashMap<>();
+    }
+
+    /**
+     * Wait until a task of the key may run, and count it as running.
+     *
+     * @return the time spent waiting, in nanoseconds.
+     */
+    synchronized long acquire(@NonNull Object key) throws InterruptedException {
+        long begin = System.nanoTime();
+        Integer running;
+        while ((running = runningCounts.get(key)) != null && running >= maxConcurrentPerKey) {
+            wait();
+        }
+        runningCounts.put(key, running == null ? 1 : running + 1);
+        return System.nanoTime() - begin;
+    }
+
+    synchronized void release(@NonNull Object key) {
+        Integer running = runningCounts.get(key);
+        if (running == null || running <= 1) {
+            runningCounts.remove(key);
+        } else {
+            runningCounts.put(key, running - 1);
+        }
+        notifyAll();
+    }
+}
@@ -0,0 +1,12 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Extracts an identifying key from a data item, e.g. the path of a file. Keys must implement
+ * {@link Object#equals(Object)} and {@link Object#hashCode()} consistently.
+ */
+public interface KeyExtractor<T, K> {
+    @NonNull
+    public K getKey(T dataItem);
+}
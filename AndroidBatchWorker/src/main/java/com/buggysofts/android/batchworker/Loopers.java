@@ -0,0 +1,56 @@
+package com.buggysofts.android.batchworker;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+final class Loopers {
+    private Loopers() {
+    }
+
+    /**
+     * Runs the specified runnable in the specified looper while locking/awaiting
+     * the calling thread until it is run.
+     *
+     * @return true if the runnable was run, false if the calling thread was interrupted
+     * first. The interrupt status of the calling thread is kept.
+     */
+    static boolean runLocked(@NonNull Looper looper, @NonNull Runnable runnable) {
+        return runLocked(looper, runnable, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Runs the specified runnable in the specified looper while locking/awaiting
+     * the calling thread, for at most the specified time. When the time elapses or the
+     * calling thread is interrupted, the runnable is still run by the looper later on.
+     *
+     * @return true if the runnable was run in time, false otherwise. The interrupt status
+     * of the calling thread is kept.
+     */
+    static boolean runLocked(@NonNull Looper looper, @NonNull Runnable runnable, long timeout, @NonNull TimeUnit unit) {
+        CountDownLatch latch = new CountDownLatch(1);
+        new Handler(looper).post(
+            new Runnable() {
+                @Override
+                public void run() {
+                    // run specified task
+                    runnable.run();
+
+                    // exit thread lock
+                    latch.countDown();
+                }
+            }
+        );
+        try {
+            return latch.await(timeout, unit);
+        } catch (InterruptedException e) {
+            // let the caller notice the interruption
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An in-memory {@link ResultCache} that evicts the least recently used results when the total
+ * weight of the cached results exceeds a maximum. By default each result weighs 1, so the maximum
+ * is a number of entries; a {@link Weigher} can weigh results by their size instead.
+ * <br>
+ * An optional next tier (e.g. a {@link DiskResultCache}) is consulted on a miss, and receives
+ * every result put in this cache.
+ */
+public class LruResultCache<K, V> implements ResultCache<K, V> {
+    /**
+     * Weighs a cached result, e.g. by its size in bytes.
+     */
+    public interface Weigher<K, V> {
+        public long weigh(@NonNull K key, @NonNull V result);
+    }
+
+    private final long maxWeight;
+    private final Weigher<K, V> weigher;
+    private final ResultCache<K, V> nextTier;
+    private final LinkedHashMap<K, V> entries;
+    private long totalWeight;
+
+    /**
+     * @param maxEntries maximum number of cached results.
+     */
+    public LruResultCache(int maxEntries) {
+        this(maxEntries, null, null);
+    }
+
+    /**
+     * @param maxWeight maximum total weight of the cached results.
+     * @param weigher   weighs the results, or null to weigh each of them 1.
+     * @param nextTier  cache to consult on a miss and to write every result through, or null.
+     */
+    public LruResultCache(long maxWeight, @Nullable Weigher<K, V> weigher, @Nullable ResultCache<K, V> nextTier) {
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("maxWeight must be at least 1");
+        }
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.nextTier = nextTier;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+        this.totalWeight = 0;
+    }
+
+    @Nullable
+    @Override
+    public V get(@NonNull K key) {
+        synchronized (this) {
+            V result = entries.get(key);
+            if (result != null) {
+                return result;
+            }
+        }
+        if (nextTier != null) {
+            V result = nextTier.get(key);
+            if (result != null) {
+                // promote to memory
+                store(key, result);
+            }
+            return result;
+        }
+        return null;
+    }
+
+    @Override
+    public void put(@NonNull K key, @NonNull V result) {
+        store(key, result);
+        if (nextTier != null) {
+            nextTier.put(key, result);
+        }
+    }
+
+    private synchronized void store(@NonNull K key, @NonNull V result) {
+        V previous = entries.put(key, result);
+        if (previous != null) {
+            totalWeight -= weigh(key, previous);
+        }
+        totalWeight += weigh(key, result);
+
+        // evict least recently used entries, but always keep the newest one
+        Iterator<Map.Entry<K, V>> iterator = entries.entrySet().iterator();
+        while (totalWeight > maxWeight && entries.size() > 1 && iterator.hasNext()) {
+            Map.Entry<K, V> eldest = iterator.next();
+            totalWeight -= weigh(eldest.getKey(), eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Remove all the cached results of this tier.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        totalWeight = 0;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private long weigh(@NonNull K key, @NonNull V result) {
+        return weigher != null ? weigher.weigh(key, result) : 1;
+    }
+}
@@ -0,0 +1,92 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Splits the task of each data item into stages, e.g. read, transform and write, so that the stages
+ * of different data items overlap - one data item can be written while the next one is transformed
+ * and a third one is read. See {@link BatchWorker#setPipeline(Pipeline)}.
+ * <br>
+ * Each stage has its own parallelism. Between two stages, a bounded queue hands the data items over;
+ * when it is full, the previous stage stops taking new data items until there is room again.
+ */
+public class Pipeline<T, V> {
+    /**
+     * Capacity of the queue in front of a stage added by {@link #then(PipelineStage, int)}.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+
+    /**
+     * A stage with its execution settings.
+     */
+    static class StageSpec {
+        final PipelineStage<Object, Object> stage;
+        final int parallelism;
+        final int queueCapacity;
+
+        StageSpec(PipelineStage<Object, Object> stage, int parallelism, int queueCapacity) {
+            this.stage = stage;
+            this.parallelism = parallelism;
+            this.queueCapacity = queueCapacity;
+        }
+    }
+
+    private final List<StageSpec> stages;
+
+    private Pipeline(@NonNull List<StageSpec> stages) {
+        this.stages = Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * Create a pipeline with its first stage, which receives the data items.
+     *
+     * @param stage       the first stage.
+     * @param parallelism number of data items the stage may process at the same time.
+     */
+    @NonNull
+    public static <T, V> Pipeline<T, V> startWith(@NonNull PipelineStage<T, V> stage, int parallelism) {
+        return new Pipeline<T, V>(new ArrayList<StageSpec>(0)).append(stage, parallelism, 0);
+    }
+
+    /**
+     * Add a stage, which receives the outputs of the current last stage.
+     *
+     * @param stage         the next stage.
+     * @param parallelism   number of data items the stage may process at the same time.
+     * @param queueCapacity number of outputs of the previous stage that may wait for this stage.
+     * @return a new pipeline ending with the added stage.
+     */
+    @NonNull
+    public <O> Pipeline<T, O> then(@NonNull PipelineStage<? super V, O> stage, int parallelism, int queueCapacity) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queueCapacity must be at least 1");
+        }
+        return append(stage, parallelism, queueCapacity);
+    }
+
+    /**
+     * Same as {@link #then(PipelineStage, int, int)} with a queue capacity of {@link #DEFAULT_QUEUE_CAPACITY}.
+     */
+    @NonNull
+    public <O> Pipeline<T, O> then(@NonNull PipelineStage<? super V, O> stage, int parallelism) {
+        return then(stage, parallelism, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <O> Pipeline<T, O> append(@NonNull PipelineStage<?, ?> stage, int parallelism, int queueCapacity) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        List<StageSpec> extended = new ArrayList<>(stages);
+        extended.add(new StageSpec((PipelineStage<Object, Object>) stage, parallelism, queueCapacity));
+        return new Pipeline<>(extended);
+    }
+
+    List<StageSpec> getStages() {
+        return stages;
+    }
+}
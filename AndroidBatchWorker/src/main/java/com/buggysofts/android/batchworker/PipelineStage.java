@@ -0,0 +1,18 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.WorkerThread;
+
+/**
+ * A step of a {@link Pipeline}, e.g. decoding, processing or writing a data item.
+ */
+public interface PipelineStage<I, O> {
+    /**
+     * Perform the step for a data item.
+     *
+     * @param input           The data item for the first stage, the output of the previous stage otherwise.
+     * @param activeDataIndex Index of the data item in the input data.
+     * @return the input of the next stage, or the result of the data item for the last stage.
+     */
+    @WorkerThread
+    public O process(I input, int activeDataIndex);
+}
@@ -0,0 +1,62 @@
+package com.buggysofts.android.batchworker;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The few platform services the batch execution uses, which fall back to plain java outside of android,
+ * e.g. in local unit tests, where the android apis are stubs that throw.
+ */
+final class Platform {
+    // the android runtime reports itself as dalvik
+    private static final boolean IS_ANDROID = "Dalvik".equals(System.getProperty("java.vm.name"));
+
+    private Platform() {
+    }
+
+    /**
+     * Lowers the priority of the calling thread, to keep it from competing with the ui thread.
+     */
+    static void setBackgroundThreadPriority() {
+        if (IS_ANDROID) {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+        } else {
+            Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+        }
+    }
+
+    /**
+     * @return milliseconds since boot, the time base of {@link SystemClock#elapsedRealtime()}.
+     * Outside of android, a monotonic clock with an arbitrary origin.
+     */
+    static long elapsedRealtime() {
+        if (IS_ANDROID) {
+            return SystemClock.elapsedRealtime();
+        }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    static void logWarning(@NonNull String tag, @NonNull String message, @Nullable Throwable throwable) {
+        if (IS_ANDROID) {
+            Log.w(tag, message, throwable);
+        } else {
+            Logger.getLogger(tag).log(Level.WARNING, message, throwable);
+        }
+    }
+
+    static void logError(@NonNull String tag, @NonNull String message, @Nullable Throwable throwable) {
+        if (IS_ANDROID) {
+            Log.e(tag, message, throwable);
+        } else {
+            Logger.getLogger(tag).log(Level.SEVERE, message, throwable);
+        }
+    }
+}
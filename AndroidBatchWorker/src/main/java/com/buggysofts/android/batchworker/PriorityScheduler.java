@@ -0,0 +1,148 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Hands out the indices of the pending data items of a batch in the order of a
+ * {@link SchedulingPolicy} and/or heaviest first, to a fixed number of workers.
+ * <br>
+ * The pending items are kept in a shared priority queue. Each worker takes a few of them at a
+ * time into its own deque, to keep the contention on the shared queue low, and steals half of
+ * the deque of another worker once the shared queue is empty.
+ */
+class PriorityScheduler<T> {
+    static final int NO_INDEX = -1;
+
+    // upper bound of the number of items a worker takes from the shared queue at once
+    private static final int MAX_PREFETCH = 8;
+
+    private final Comparator<Integer> indexComparator;
+    private final int maxPrefetch;
+    private final List<ArrayDeque<Integer>> localQueues;
+    private PriorityQueue<Integer> pendingQueue;
+
+    /**
+     * @param skippedIndices indices of data items that must not be scheduled, e.g. restored ones.
+     * @param policy         the scheduling policy, or null.
+     * @param weights        weights of the data items to schedule the heaviest first (after the policy), or null.
+     */
+    PriorityScheduler(@NonNull final List<T> dataItems,
+                      @NonNull BitSet skippedIndices,
+                      @Nullable final SchedulingPolicy<T> policy,
+                      @Nullable final long[] weights,
+                      int workerCount) {
+        this.indexComparator = new Comparator<Integer>() {
+            @Override
+            public int compare(Integer first, Integer second) {
+                if (policy != null) {
+                    int byPolicy = policy.compare(dataItems.get(first), dataItems.get(second));
+                    if (byPolicy != 0) {
+                        return byPolicy;
+                    }
+                }
+                if (weights != null) {
+                    int byWeight = Long.compare(weights[second], weights[first]);
+                    if (byWeight != 0) {
+                        return byWeight;
+                    }
+                }
+                return Integer.compare(first, second);
+            }
+        };
+
+        // heaviest first balances the workers only if each of them takes the next heaviest item when idle
+        this.maxPrefetch = weights != null ? 1 : MAX_PREFETCH;
+        this.localQueues = new ArrayList<>(workerCount);
+        for (int w = 0; w < workerCount; ++w) {
+            localQueues.add(new ArrayDeque<Integer>(maxPrefetch));
+        }
+
+        List<Integer> pending = new ArrayList<>(dataItems.size());
+        for (int i = skippedIndices.nextClearBit(0); i < dataItems.size(); i = skippedIndices.nextClearBit(i + 1)) {
+            pending.add(i);
+        }
+        this.pendingQueue = newQueue(pending);
+    }
+
+    /**
+     * @return the index of the next data item for the worker, or {@link #NO_INDEX} if none is left.
+     */
+    int next(int worker) {
+        ArrayDeque<Integer> localQueue = localQueues.get(worker);
+        synchronized (localQueue) {
+            Integer index = localQueue.pollFirst();
+            if (index != null) {
+                return index;
+            }
+        }
+
+        // refill from the shared queue
+        synchronized (this) {
+            if (!pendingQueue.isEmpty()) {
+                int prefetch = Math.max(
+                    1,
+                    Math.min(maxPrefetch, pendingQueue.size() / (localQueues.size() * 4))
+                );
+                int index = pendingQueue.poll();
+                synchronized (localQueue) {
+                    for (int i = 1; i < prefetch; ++i) {
+                        localQueue.addLast(pendingQueue.poll());
+                    }
+                }
+                return index;
+            }
+        }
+
+        // steal from the other workers
+        for (int offset = 1; offset < localQueues.size(); ++offset) {
+            ArrayDeque<Integer> victimQueue = localQueues.get((worker + offset) % localQueues.size());
+            List<Integer> stolen;
+            synchronized (victimQueue) {
+                int count = (victimQueue.size() + 1) / 2;
+                if (count == 0) {
+                    continue;
+                }
+                // the lowest priority items are at the tail
+                stolen = new ArrayList<>(count);
+                for (int i = 0; i < count; ++i) {
+                    stolen.add(0, victimQueue.pollLast());
+                }
+            }
+            synchronized (localQueue) {
+                for (int i = 1; i < stolen.size(); ++i) {
+                    localQueue.addLast(stolen.get(i));
+                }
+            }
+            return stolen.get(0);
+        }
+        return NO_INDEX;
+    }
+
+    /**
+     * Re-order the pending data items, after the state the policy depends on has changed.
+     */
+    synchronized void reprioritize() {
+        List<Integer> pending = new ArrayList<>(pendingQueue);
+        for (ArrayDeque<Integer> localQueue : localQueues) {
+            synchronized (localQueue) {
+                pending.addAll(localQueue);
+                localQueue.clear();
+            }
+        }
+        pendingQueue = newQueue(pending);
+    }
+
+    private PriorityQueue<Integer> newQueue(List<Integer> pending) {
+        PriorityQueue<Integer> queue = new PriorityQueue<>(Math.max(1, pending.size()), indexComparator);
+        queue.addAll(pending);
+        return queue;
+    }
+}
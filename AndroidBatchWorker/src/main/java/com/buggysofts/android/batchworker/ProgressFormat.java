@@ -0,0 +1,31 @@
+package com.buggysofts.android.batchworker;
+
+/**
+ * How the progress description of the ui is produced, see {@link BatchWorker#setProgressFormat(ProgressFormat)}.
+ */
+public enum ProgressFormat {
+    /**
+     * The text of {@link WorkerCallBack#taskProgressDescriptor(java.util.List, int)}.
+     */
+    DESCRIPTOR,
+
+    /**
+     * The number of completed data items over the total, e.g. "42/100".
+     */
+    COUNT,
+
+    /**
+     * The percentage of completed data items (by weight, if they are weighed), e.g. "42%".
+     */
+    PERCENT,
+
+    /**
+     * The number of completed data items over the total, and the estimated remaining time, e.g. "42/100 &middot; 3:05".
+     */
+    COUNT_AND_ETA,
+
+    /**
+     * The number of completed data items over the total, and the data items completed per second, e.g. "42/100 &middot; 3.5/s".
+     */
+    COUNT_AND_THROUGHPUT
+}
@@ -0,0 +1,151 @@
+package com.buggysofts.android.batchworker;
+
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.UiThread;
+
+/**
+ * Formats progress texts like "42/100", "42%" or "42/100 &middot; 3:05" into a reused char buffer, without allocating.
+ * The text is handed to a {@link TextView} by {@link TextView#setText(char[], int, int)}, which
+ * references the buffer instead of copying it, so a formatter must only be applied to a single view,
+ * and only right before it is applied again.
+ */
+public class ProgressFormatter {
+    private static final int UNKNOWN_TOTAL = -1;
+    private static final long MAX_DURATION_SECONDS = 99 * 3600 + 59 * 60 + 59;
+    private static final String SEPARATOR = " \u00B7 ";
+
+    // fits "-2147483648/-2147483648", the separator and "2147483647.9/s"
+    private final char[] buffer = new char[40];
+    private int length;
+
+    /**
+     * Format the count over the total, e.g. "42/100", or only the count if the total is negative.
+     */
+    @NonNull
+    public ProgressFormatter formatCount(int count, int total) {
+        length = 0;
+        appendInt(count);
+        if (total != UNKNOWN_TOTAL && total >= 0) {
+            buffer[length++] = '/';
+            appendInt(total);
+        }
+        return this;
+    }
+
+    /**
+     * Format the percentage of the count in the total, e.g. "42%", or only the count if the total is not positive.
+     */
+    @NonNull
+    public ProgressFormatter formatPercent(int count, int total) {
+        if (total <= 0) {
+            return formatCount(count, UNKNOWN_TOTAL);
+        }
+        length = 0;
+        appendInt((int) Math.min(100, (long) count * 100 / total));
+        buffer[length++] = '%';
+        return this;
+    }
+
+    /**
+     * Format the count over the total followed by the remaining time, e.g. "42/100 &middot; 3:05" or
+     * "42/100 &middot; 1:02:05". The remaining time is left out if it is negative, i.e. unknown.
+     */
+    @NonNull
+    public ProgressFormatter formatCountAndEta(int count, int total, long etaMillis) {
+        formatCount(count, total);
+        if (etaMillis >= 0) {
+            appendSeparator();
+            appendDuration(etaMillis);
+        }
+        return this;
+    }
+
+    /**
+     * Format the count over the total followed by the throughput, e.g. "42/100 &middot; 3.5/s".
+     */
+    @NonNull
+    public ProgressFormatter formatCountAndThroughput(int count, int total, double itemsPerSecond) {
+        formatCount(count, total);
+        appendSeparator();
+        long tenths = Math.min(Math.round(Math.max(itemsPerSecond, 0) * 10), Integer.MAX_VALUE * 10L + 9);
+        appendInt((int) (tenths / 10));
+        buffer[length++] = '.';
+        buffer[length++] = (char) ('0' + tenths % 10);
+        buffer[length++] = '/';
+        buffer[length++] = 's';
+        return this;
+    }
+
+    /**
+     * Display the last formatted text in the view.
+     */
+    @UiThread
+    public void applyTo(@NonNull TextView textView) {
+        textView.setText(buffer, 0, length);
+    }
+
+    public int length() {
+        return length;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length);
+    }
+
+    private void appendSeparator() {
+        SEPARATOR.getChars(0, SEPARATOR.length(), buffer, length);
+        length += SEPARATOR.length();
+    }
+
+    /**
+     * Append a duration as "m:ss" or "h:mm:ss", rounded up to the second, at most "99:59:59".
+     */
+    private void appendDuration(long millis) {
+        long seconds = Math.min((millis + 999) / 1000, MAX_DURATION_SECONDS);
+        int hours = (int) (seconds / 3600);
+        int minutes = (int) (seconds / 60 % 60);
+        if (hours > 0) {
+            appendInt(hours);
+            buffer[length++] = ':';
+            appendTwoDigits(minutes);
+        } else {
+            appendInt(minutes);
+        }
+        buffer[length++] = ':';
+        appendTwoDigits((int) (seconds % 60));
+    }
+
+    private void appendTwoDigits(int value) {
+        buffer[length++] = (char) ('0' + value / 10);
+        buffer[length++] = (char) ('0' + value % 10);
+    }
+
+    private void appendInt(int value) {
+        if (value < 0) {
+            if (value == Integer.MIN_VALUE) {
+                String digits = Integer.toString(value);
+                digits.getChars(0, digits.length(), buffer, length);
+                length += digits.length();
+                return;
+            }
+            buffer[length++] = '-';
+            value = -value;
+        }
+
+        // write the digits backwards, then reverse them in place
+        int start = length;
+        do {
+            buffer[length++] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = length - 1; i < j; ++i, --j) {
+            char c = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = c;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.WorkerThread;
+
+/**
+ * Receives the progress of the tasks without involving the ui thread, see
+ * {@link BatchWorker#setProgressListener(ProgressListener)}. This is how a headless batch
+ * reports its progress.
+ */
+public interface ProgressListener {
+    /**
+     * Called on the thread running the tasks, when a task starts and when it completes.
+     * In parallel mode, it may be called by several worker threads at the same time.
+     *
+     * @param activeIndex    Index of the data item whose task started or completed.
+     * @param completedCount Number of data items whose task has completed.
+     * @param totalCount     Number of data items, an estimate or {@link DataSource#SIZE_UNKNOWN} for a streaming data source.
+     */
+    @WorkerThread
+    public void onProgress(int activeIndex, int completedCount, int totalCount);
+}
@@ -0,0 +1,146 @@
+package com.buggysofts.android.batchworker;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import androidx.annotation.WorkerThread;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Non-blocking progress publisher. Worker threads record the latest progress state, and the state
+ * is rendered on the main thread at most once per display frame. Intermediate states that are
+ * published within a single frame are coalesced, and the publishing thread never waits for the ui.
+ * <br>
+ * Whatever is expensive to render (e.g. descriptor strings) is prepared by the publishing thread,
+ * once per rendered frame, so states that are coalesced away are never prepared.
+ */
+class ProgressPublisher<P> implements Choreographer.FrameCallback {
+    /**
+     * Prepares and renders the progress states.
+     */
+    interface Renderer<P> {
+        /**
+         * Prepare the rendering of a state, on the publishing thread.
+         */
+        @WorkerThread
+        P prepare(int activeIndex, int completedCount);
+
+        /**
+         * Render a state on the main thread.
+         *
+         * @param prepared        the latest prepared state, which may be slightly older than the rendered state.
+         * @param preparedChanged whether the prepared state changed since the last render.
+         */
+        @UiThread
+        void render(@Nullable P prepared, boolean preparedChanged, int activeIndex, int completedCount);
+    }
+
+    private static final long NO_STATE = -1L;
+
+    private final Renderer<P> renderer;
+    private final Handler mainHandler;
+
+    // active index in the high half, completed count in the low half
+    private final AtomicLong latestState;
+    private final AtomicBoolean frameScheduled;
+    private final AtomicBoolean prepareRequested;
+    private volatile P prepared;
+    private long renderedState;
+    private P renderedPrepared;
+    private volatile boolean stopped;
+    private volatile Choreographer choreographer;
+
+    private final Runnable frameScheduler = new Runnable() {
+        @Override
+        public void run() {
+            // choreographer is bound to the thread it is obtained on
+            choreographer = Choreographer.getInstance();
+            choreographer.postFrameCallback(ProgressPublisher.this);
+        }
+    };
+
+    ProgressPublisher(@NonNull Renderer<P> renderer) {
+        this.renderer = renderer;
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.latestState = new AtomicLong(NO_STATE);
+        this.frameScheduled = new AtomicBoolean(false);
+        this.prepareRequested = new AtomicBoolean(true);
+        this.renderedState = NO_STATE;
+    }
+
+    /**
+     * Record the latest progress state. The call returns immediately, the state will be rendered
+     * with the next display frame, unless it is superseded by a later state before that.
+     */
+    @AnyThread
+    void publish(int activeIndex, int completedCount) {
+        latestState.set(pack(activeIndex, completedCount));
+        // the first state published after a frame is prepared for the next one
+        if (!stopped && prepareRequested.compareAndSet(true, false)) {
+            prepared = renderer.prepare(activeIndex, completedCount);
+        }
+        if (!stopped && frameScheduled.compareAndSet(false, true)) {
+            Choreographer activeChoreographer = choreographer;
+            if (activeChoreographer != null) {
+                activeChoreographer.postFrameCallback(this);
+            } else {
+                mainHandler.post(frameScheduler);
+            }
+        }
+    }
+
+    /**
+     * Render the latest state right away (if it was not rendered yet), and stop rendering any further states.
+     */
+    @UiThread
+    void flushAndStop() {
+        stopped = true;
+        if (choreographer != null) {
+            choreographer.removeFrameCallback(this);
+        }
+        mainHandler.removeCallbacks(frameScheduler);
+        renderLatest();
+    }
+
+    /**
+     * Render the latest state again in full, e.g. on new views.
+     */
+    @UiThread
+    void invalidate() {
+        renderedState = NO_STATE;
+        renderedPrepared = null;
+        renderLatest();
+    }
+
+    @Override
+    @UiThread
+    public void doFrame(long frameTimeNanos) {
+        frameScheduled.set(false);
+        if (!stopped) {
+            renderLatest();
+        }
+    }
+
+    private void renderLatest() {
+        long state = latestState.get();
+        P latestPrepared = prepared;
+        boolean preparedChanged = latestPrepared != renderedPrepared;
+        if (state != NO_STATE && (state != renderedState || preparedChanged)) {
+            renderedState = state;
+            renderedPrepared = latestPrepared;
+            renderer.render(latestPrepared, preparedChanged, (int) (state >>> 32), (int) state);
+        }
+        prepareRequested.set(true);
+    }
+
+    private static long pack(int activeIndex, int completedCount) {
+        return (((long) activeIndex) << 32) | (completedCount & 0xFFFFFFFFL);
+    }
+}
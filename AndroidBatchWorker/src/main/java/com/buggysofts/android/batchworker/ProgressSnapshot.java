@@ -0,0 +1,138 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+/**
+ * An immutable state of the progress of a batch, see {@link ProgressStream}.
+ */
+public class ProgressSnapshot {
+    /**
+     * Returned by {@link #getEtaMillis()} while the remaining time cannot be estimated.
+     */
+    public static final long ETA_UNKNOWN = -1L;
+
+    private final int activeIndex;
+    private final int completedCount;
+    private final int totalCount;
+    private final long completedWeight;
+    private final long totalWeight;
+    private final long elapsedNanos;
+    private final double throughput;
+    private final long etaMillis;
+    private final boolean finished;
+
+    ProgressSnapshot(int activeIndex,
+                     int completedCount,
+                     int totalCount,
+                     long completedWeight,
+                     long totalWeight,
+                     long elapsedNanos,
+                     double throughput,
+                     long etaMillis,
+                     boolean finished) {
+        this.activeIndex = activeIndex;
+        this.completedCount = completedCount;
+        this.totalCount = totalCount;
+        this.completedWeight = completedWeight;
+        this.totalWeight = totalWeight;
+        this.elapsedNanos = elapsedNanos;
+        this.throughput = throughput;
+        this.etaMillis = etaMillis;
+        this.finished = finished;
+    }
+
+    /**
+     * Index of the data item whose task started or completed last, or -1 before the first one.
+     */
+    public int getActiveIndex() {
+        return activeIndex;
+    }
+
+    /**
+     * Number of data items whose task has completed.
+     */
+    public int getCompletedCount() {
+        return completedCount;
+    }
+
+    /**
+     * Number of data items, an estimate or {@link DataSource#SIZE_UNKNOWN} for a streaming data source.
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * Total weight of the completed data items, see {@link BatchWorker#setItemWeigher(ItemWeigher, boolean)}.
+     */
+    public long getCompletedWeight() {
+        return completedWeight;
+    }
+
+    /**
+     * Total weight of all the data items, or 0 if they are not weighted.
+     */
+    public long getTotalWeight() {
+        return totalWeight;
+    }
+
+    /**
+     * Completed part of the batch from 0 to 1, by weight if the data items are weighted, by count
+     * otherwise, or 0 if the total is unknown.
+     */
+    public double getFraction() {
+        if (totalWeight > 0) {
+            return Math.min(1, (double) completedWeight / totalWeight);
+        }
+        return totalCount > 0 ? Math.min(1, (double) completedCount / totalCount) : 0;
+    }
+
+    /**
+     * Time since the tasks started, in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Completed data items per second, a moving average over the last several seconds that follows
+     * changes in parallelism and in the duration of the tasks.
+     */
+    public double getThroughput() {
+        return throughput;
+    }
+
+    /**
+     * Estimated time until the remaining data items are completed at the current throughput (of weight,
+     * if the data items are weighted), or {@link #ETA_UNKNOWN} if the total is unknown or nothing has
+     * completed yet.
+     */
+    public long getEtaMillis() {
+        return etaMillis;
+    }
+
+    /**
+     * Whether the batch has finished, i.e. this is the last snapshot.
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return String.format(
+            Locale.US,
+            "ProgressSnapshot{active=%d, completed=%d, total=%d, fraction=%.3f, throughput=%.1f/s, eta=%dms, finished=%s}",
+            activeIndex,
+            completedCount,
+            totalCount,
+            getFraction(),
+            throughput,
+            etaMillis,
+            finished
+        );
+    }
+}
@@ -0,0 +1,204 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Conflated stream of the progress of a batch, see {@link BatchWorker#getProgressStream()}.
+ * <br>
+ * Worker threads only record the latest progress state, without allocating or waiting. Each observer
+ * has at most one delivery pending on its executor, and receives a snapshot of the state that is
+ * latest when the delivery runs - the states published in between are skipped. A slow observer
+ * therefore sees fewer states, but never slows the tasks down.
+ * <br>
+ * The throughput and the remaining time are estimated by a moving average over the last several
+ * seconds, see {@link ProgressSnapshot}.
+ */
+public class ProgressStream {
+    /**
+     * Observes the progress states.
+     */
+    public interface Observer {
+        /**
+         * Called on the executor of the observer with the latest progress state. The last call
+         * has {@link ProgressSnapshot#isFinished()} set.
+         */
+        void onProgress(@NonNull ProgressSnapshot snapshot);
+    }
+
+    private static final long NO_STATE = -1L;
+
+    // active index in the high half, completed count in the low half
+    private final AtomicLong latestState;
+    private final List<Subscription> subscriptions;
+    private final ThroughputEstimator throughputEstimator;
+    private final ThroughputEstimator weightEstimator;
+    private final AtomicLong completedWeight;
+    private volatile long totalWeight;
+    private volatile int totalCount;
+    private volatile long startNanos;
+    private volatile boolean finished;
+
+    ProgressStream() {
+        this.latestState = new AtomicLong(NO_STATE);
+        this.subscriptions = new CopyOnWriteArrayList<>();
+        this.throughputEstimator = new ThroughputEstimator();
+        this.weightEstimator = new ThroughputEstimator();
+        this.completedWeight = new AtomicLong(0);
+        this.totalCount = DataSource.SIZE_UNKNOWN;
+    }
+
+    /**
+     * Observe the progress. The observer receives the current state right away (on its executor),
+     * and the later states as they are published.
+     *
+     * @param executor runs the deliveries, e.g. one posting to the main thread.
+     * @param observer the observer.
+     */
+    @AnyThread
+    public void observe(@NonNull Executor executor, @NonNull Observer observer) {
+        Subscription subscription = new Subscription(executor, observer);
+        subscriptions.add(subscription);
+        subscription.schedule();
+    }
+
+    /**
+     * Stop delivering the progress to the observer. A delivery that is already pending may still run.
+     */
+    @AnyThread
+    public void removeObserver(@NonNull Observer observer) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.observer == observer) {
+                subscriptions.remove(subscription);
+            }
+        }
+    }
+
+    /**
+     * Snapshot the latest progress state, e.g. to poll it.
+     */
+    @NonNull
+    @AnyThread
+    public ProgressSnapshot getLatest() {
+        long state = latestState.get();
+        int activeIndex = state != NO_STATE ? (int) (state >>> 32) : -1;
+        int completedCount = state != NO_STATE ? (int) state : 0;
+        int total = totalCount;
+        long start = startNanos;
+        long now = System.nanoTime();
+        long elapsed = start != 0 ? now - start : 0;
+        double throughput = start != 0 ? throughputEstimator.update(now, completedCount) : 0;
+        long weightTotal = totalWeight;
+        long weightCompleted = completedWeight.get();
+        long eta = ProgressSnapshot.ETA_UNKNOWN;
+        if (finished) {
+            eta = 0;
+        } else if (weightTotal > 0) {
+            // the remaining weight, at the rate weight completes
+            double weightRate = start != 0 ? weightEstimator.update(now, weightCompleted) : 0;
+            if (weightRate > 0) {
+                eta = (long) (Math.max(weightTotal - weightCompleted, 0) * 1000 / weightRate);
+            }
+        } else if (total != DataSource.SIZE_UNKNOWN && throughput > 0) {
+            eta = (long) (Math.max(total - completedCount, 0) * 1000 / throughput);
+        }
+        return new ProgressSnapshot(
+            activeIndex,
+            completedCount,
+            total,
+            weightCompleted,
+            weightTotal,
+            elapsed,
+            throughput,
+            eta,
+            finished
+        );
+    }
+
+    /**
+     * Mark the start of the tasks.
+     *
+     * @param completedCount  number of the data items completed before the start, e.g. restored ones.
+     * @param totalWeight     total weight of the data items, or 0 if they are not weighted.
+     * @param completedWeight weight of the data items completed before the start, e.g. restored ones.
+     */
+    void start(int totalCount, int completedCount, long totalWeight, long completedWeight) {
+        long now = System.nanoTime();
+        this.totalCount = totalCount;
+        this.totalWeight = totalWeight;
+        this.completedWeight.set(completedWeight);
+        throughputEstimator.start(now, completedCount);
+        weightEstimator.start(now, completedWeight);
+        this.startNanos = now;
+        notifyObservers();
+    }
+
+    /**
+     * Record the latest progress state. The call returns immediately.
+     */
+    void publish(int activeIndex, int completedCount) {
+        latestState.set((((long) activeIndex) << 32) | (completedCount & 0xFFFFFFFFL));
+        notifyObservers();
+    }
+
+    /**
+     * Add the weight of a completed data item. Published with the next progress state.
+     */
+    void addCompletedWeight(long weight) {
+        completedWeight.addAndGet(weight);
+    }
+
+    long getCompletedWeight() {
+        return completedWeight.get();
+    }
+
+    /**
+     * Mark the end of the batch, and deliver the final state.
+     */
+    void finish() {
+        finished = true;
+        notifyObservers();
+    }
+
+    private void notifyObservers() {
+        for (Subscription subscription : subscriptions) {
+            subscription.schedule();
+        }
+    }
+
+    /**
+     * An observer with its executor, and whether a delivery is pending.
+     */
+    private class Subscription implements Runnable {
+        final Executor executor;
+        final Observer observer;
+        final AtomicBoolean scheduled;
+
+        Subscription(Executor executor, Observer observer) {
+            this.executor = executor;
+            this.observer = observer;
+            this.scheduled = new AtomicBoolean(false);
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                executor.execute(this);
+            }
+        }
+
+        @Override
+        public void run() {
+            // states published from here on schedule another delivery
+            scheduled.set(false);
+            if (subscriptions.contains(this)) {
+                observer.onProgress(getLatest());
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.buggysofts.android.batchworker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A token bucket limiting the rate of the tasks, see {@link BatchWorker#setRateLimiter(RateLimiter)}.
+ * Tokens are added at a steady rate up to a maximum burst, and each task attempt takes one. When the
+ * bucket is empty, the next token is reserved, and the caller waits until it is due.
+ * <br>
+ * A limiter may be shared by several batches, to limit their combined rate.
+ */
+public class RateLimiter {
+    private final double permitsPerNano;
+    private final double maxBurst;
+    private double availablePermits;
+    private long lastRefillNanos;
+
+    /**
+     * @param permitsPerSecond steady rate of the tasks.
+     * @param maxBurst         number of tasks that may start at once after an idle period.
+     */
+    public RateLimiter(double permitsPerSecond, int maxBurst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        if (maxBurst < 1) {
+            throw new IllegalArgumentException("maxBurst must be at least 1");
+        }
+        this.permitsPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.maxBurst = maxBurst;
+        this.availablePermits = maxBurst;
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * Take the given number of permits, waiting until they are available.
+     *
+     * @return the time spent waiting, in nanoseconds.
+     * @throws InterruptedException if the calling thread was interrupted while waiting. The permits stay taken.
+     */
+    public long acquire(int permits) throws InterruptedException {
+        long waitNanos = reserve(permits);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return waitNanos;
+    }
+
+    /**
+     * @return the time until the reserved permits are due.
+     */
+    private synchronized long reserve(int permits) {
+        long now = System.nanoTime();
+        availablePermits = Math.min(maxBurst, availablePermits + (now - lastRefillNanos) * permitsPerNano);
+        lastRefillNanos = now;
+
+        // a deficit is paid back by the next refills, which delays the later callers too
+        availablePermits -= permits;
+        return availablePermits >= 0 ? 0 : (long) Math.ceil(-availablePermits / permitsPerNano);
+    }
+}
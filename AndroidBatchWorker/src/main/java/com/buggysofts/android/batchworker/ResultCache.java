@@ -0,0 +1,21 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Caches the results of tasks by the key of their data item, so that repeated batches over the same
+ * data items do not perform the tasks again. See
+ * {@link BatchWorker#setResultCache(KeyExtractor, ResultCache)}.
+ * <br>
+ * Implementations must be thread-safe. Null results are not cached.
+ */
+public interface ResultCache<K, V> {
+    /**
+     * @return the cached result of the key, or null if there is none.
+     */
+    @Nullable
+    public V get(@NonNull K key);
+
+    public void put(@NonNull K key, @NonNull V result);
+}
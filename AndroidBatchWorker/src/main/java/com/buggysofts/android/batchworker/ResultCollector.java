@@ -0,0 +1,102 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the results of the tasks. If retaining, each result is kept at the position of its data
+ * item, so that the results are in input order regardless of the execution order. The storage is
+ * pre-sized to the expected number of results, and grows if there are more.
+ * <br>
+ * Each result is also handed to the {@link ResultConsumer}, if there is one. Ordered consumption
+ * holds back the results that complete ahead of an earlier one, until that earlier one is done.
+ * The {@link ResultStream}, if there is one, gets the results in completion order.
+ */
+class ResultCollector<V> {
+    private final boolean retain;
+    private final ResultConsumer<V> consumer;
+    private final boolean ordered;
+    private final ResultStream<V> stream;
+
+    // retained results
+    private Object[] slots;
+    private int count;
+
+    // ordered consumption state
+    private final Object deliveryLock;
+    private final Map<Integer, V> pendingResults;
+    private int nextDeliveryIndex;
+
+    ResultCollector(int expectedSize,
+                    boolean retain,
+                    @Nullable ResultConsumer<V> consumer,
+                    boolean ordered,
+                    @Nullable ResultStream<V> stream) {
+        this.retain = retain;
+        this.consumer = consumer;
+        this.ordered = ordered;
+        this.stream = stream;
+        this.slots = new Object[retain ? Math.max(expectedSize, 0) : 0];
+        this.count = 0;
+        this.deliveryLock = new Object();
+        this.pendingResults = new HashMap<>();
+        this.nextDeliveryIndex = 0;
+    }
+
+    void set(int index, V result) {
+        if (retain) {
+            store(index, result);
+        }
+        if (consumer != null) {
+            if (ordered) {
+                deliverInOrder(index, result);
+            } else {
+                consumer.onResult(index, result);
+            }
+        }
+        if (stream != null) {
+            stream.emit(index, result);
+        }
+    }
+
+    /**
+     * The retained results of all the data items, in input order.
+     * Empty if the results are not retained.
+     */
+    @NonNull
+    @SuppressWarnings("unchecked")
+    synchronized List<V> getResults() {
+        List<V> results = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            results.add((V) slots[i]);
+        }
+        return results;
+    }
+
+    private synchronized void store(int index, V result) {
+        if (index >= slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(index + 1, slots.length * 2));
+        }
+        slots[index] = result;
+        count = Math.max(count, index + 1);
+    }
+
+    private void deliverInOrder(int index, V result) {
+        synchronized (deliveryLock) {
+            pendingResults.put(index, result);
+            while (pendingResults.containsKey(nextDeliveryIndex)) {
+                consumer.onResult(
+                    nextDeliveryIndex,
+                    pendingResults.remove(nextDeliveryIndex)
+                );
+                ++nextDeliveryIndex;
+            }
+        }
+    }
+}
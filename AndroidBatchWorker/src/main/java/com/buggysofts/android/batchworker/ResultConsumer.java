@@ -0,0 +1,19 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.WorkerThread;
+
+/**
+ * Receives the result of each task as soon as it is produced, see
+ * {@link BatchWorker#setResultConsumer(ResultConsumer, boolean)}.
+ */
+public interface ResultConsumer<V> {
+    /**
+     * Consume the result of a task. In parallel mode, unordered results may be consumed by
+     * several worker threads at the same time.
+     *
+     * @param index  Index of the data item the result belongs to.
+     * @param result The output of the task.
+     */
+    @WorkerThread
+    public void onResult(int index, V result);
+}
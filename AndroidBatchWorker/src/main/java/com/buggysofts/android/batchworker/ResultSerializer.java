@@ -0,0 +1,15 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+/**
+ * Converts results to bytes and back, for storing them outside of the memory.
+ */
+public interface ResultSerializer<V> {
+    @NonNull
+    public byte[] serialize(@Nullable V result);
+
+    @Nullable
+    public V deserialize(@NonNull byte[] bytes);
+}
@@ -0,0 +1,202 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Bounded stream of the results of a batch, see {@link BatchWorker#setResultStream(ResultStream)}.
+ * <br>
+ * Results are buffered as their tasks complete, and delivered to the observer one at a time, in the
+ * order they were buffered, on its executor. Unlike a {@link ResultConsumer}, the observer does not run
+ * on the worker threads: when it falls behind and the buffer fills up, the {@link BackpressurePolicy}
+ * decides whether the workers wait, or results are dropped.
+ */
+public class ResultStream<V> {
+    /**
+     * Observes the results.
+     */
+    public interface Observer<V> {
+        /**
+         * Called on the executor of the observer with the result of a task.
+         *
+         * @param index  Index of the data item the result belongs to.
+         * @param result The output of the task.
+         */
+        void onResult(int index, V result);
+
+        /**
+         * Called on the executor of the observer after all the buffered results were delivered,
+         * once the batch has finished.
+         *
+         * @param completed whether the batch ran for all the input data.
+         */
+        void onComplete(boolean completed);
+    }
+
+    private final BackpressurePolicy policy;
+
+    // ring buffer of the results that are not delivered yet
+    private final int[] indices;
+    private final Object[] results;
+    private int head;
+    private int size;
+
+    private Executor executor;
+    private Observer<V> observer;
+    private boolean draining;
+    private boolean finished;
+    private boolean completed;
+    private boolean blockingReleased;
+    private int droppedCount;
+
+    private final Runnable drainer = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * Construct a result stream.
+     *
+     * @param capacity number of results to buffer for the observer.
+     * @param policy   what happens to a result when the buffer is full.
+     */
+    public ResultStream(int capacity, @NonNull BackpressurePolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.policy = policy;
+        this.indices = new int[capacity];
+        this.results = new Object[capacity];
+    }
+
+    /**
+     * Set the observer of the results, before the batch is started. Results buffered before this are
+     * delivered right away.
+     *
+     * @param executor runs the deliveries, e.g. one posting to the main thread.
+     * @param observer the observer.
+     */
+    public synchronized void observe(@NonNull Executor executor, @NonNull Observer<V> observer) {
+        if (this.observer != null) {
+            throw new IllegalStateException("The result stream is already observed");
+        }
+        this.executor = executor;
+        this.observer = observer;
+        scheduleDrainLocked();
+    }
+
+    /**
+     * Number of results dropped because the buffer was full.
+     */
+    public synchronized int getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Buffer a result, on a worker thread. Depending on the policy, this waits for room in the buffer.
+     */
+    synchronized void emit(int index, V result) {
+        if (size == indices.length) {
+            if (policy == BackpressurePolicy.BLOCK) {
+                boolean interrupted = false;
+                while (size == indices.length && !blockingReleased) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (size == indices.length) {
+                ++droppedCount;
+                if (policy != BackpressurePolicy.DROP_OLDEST) {
+                    return;
+                }
+                removeFirstLocked();
+            }
+        }
+        int tail = (head + size) % indices.length;
+        indices[tail] = index;
+        results[tail] = result;
+        ++size;
+        scheduleDrainLocked();
+    }
+
+    /**
+     * Stop making the workers wait, e.g. on cancellation. Results that do not fit are dropped.
+     */
+    synchronized void releaseBlocking() {
+        blockingReleased = true;
+        notifyAll();
+    }
+
+    /**
+     * Mark the end of the batch. The observer completes after the buffered results are delivered.
+     */
+    synchronized void finish(boolean completed) {
+        this.finished = true;
+        this.completed = completed;
+        releaseBlocking();
+        scheduleDrainLocked();
+    }
+
+    private void scheduleDrainLocked() {
+        if (observer != null && !draining) {
+            draining = true;
+            executor.execute(drainer);
+        }
+    }
+
+    private void removeFirstLocked() {
+        results[head] = null;
+        head = (head + 1) % indices.length;
+        --size;
+    }
+
+    /**
+     * Deliver the buffered results, then the completion if the batch has finished.
+     */
+    @SuppressWarnings("unchecked")
+    private void drain() {
+        Observer<V> activeObserver;
+        synchronized (this) {
+            activeObserver = observer;
+        }
+        while (true) {
+            int index;
+            V result;
+            boolean complete = false;
+            boolean completedBatch = false;
+            synchronized (this) {
+                if (size == 0) {
+                    draining = false;
+                    if (!finished) {
+                        return;
+                    }
+                    // complete only once
+                    finished = false;
+                    complete = true;
+                    completedBatch = completed;
+                    index = 0;
+                    result = null;
+                } else {
+                    index = indices[head];
+                    result = (V) results[head];
+                    removeFirstLocked();
+                    notifyAll();
+                }
+            }
+            if (complete) {
+                activeObserver.onComplete(completedBatch);
+                return;
+            }
+            activeObserver.onResult(index, result);
+        }
+    }
+}
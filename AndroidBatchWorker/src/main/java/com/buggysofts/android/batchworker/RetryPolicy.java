@@ -0,0 +1,114 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+
+import java.util.Random;
+
+/**
+ * Decides whether and when a failed task is retried. Retries are delayed by an exponential backoff
+ * with random jitter, so that a flaky resource is not hammered by all the workers at once.
+ */
+public class RetryPolicy {
+    /**
+     * Decides whether a failure is worth retrying.
+     */
+    public interface RetryPredicate {
+        public boolean isRetryable(@NonNull Throwable failure);
+    }
+
+    private static final RetryPredicate RETRY_ALL = new RetryPredicate() {
+        @Override
+        public boolean isRetryable(@NonNull Throwable failure) {
+            return true;
+        }
+    };
+
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private double backoffMultiplier;
+    private double jitterFactor;
+    private RetryPredicate retryPredicate;
+    private final Random random;
+
+    /**
+     * @param maxAttempts          maximum number of attempts of a task, including the first one.
+     * @param initialBackoffMillis delay before the first retry.
+     * @param maxBackoffMillis     upper bound of the delay before a retry.
+     */
+    public RetryPolicy(int maxAttempts, long initialBackoffMillis, long maxBackoffMillis) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("maxAttempts must be at least 1");
+        }
+        if (initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("Backoff must satisfy 0 <= initialBackoffMillis <= maxBackoffMillis");
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.backoffMultiplier = 2.0;
+        this.jitterFactor = 0.5;
+        this.retryPredicate = RETRY_ALL;
+        this.random = new Random();
+    }
+
+    /**
+     * Set the factor the backoff grows by after each retry, 2 by default.
+     */
+    public RetryPolicy setBackoffMultiplier(double backoffMultiplier) {
+        if (backoffMultiplier < 1) {
+            throw new IllegalArgumentException("backoffMultiplier must be at least 1");
+        }
+        this.backoffMultiplier = backoffMultiplier;
+        return this;
+    }
+
+    /**
+     * Set the portion of the backoff that is randomized, in the range [0, 1], 0.5 by default.
+     * For example, with 0.5 a backoff of 100ms becomes a random delay between 50ms and 100ms.
+     */
+    public RetryPolicy setJitterFactor(double jitterFactor) {
+        if (jitterFactor < 0 || jitterFactor > 1) {
+            throw new IllegalArgumentException("jitterFactor must be in the range [0, 1]");
+        }
+        this.jitterFactor = jitterFactor;
+        return this;
+    }
+
+    /**
+     * Set which failures are retried, all of them by default.
+     */
+    public RetryPolicy setRetryPredicate(@NonNull RetryPredicate retryPredicate) {
+        this.retryPredicate = retryPredicate;
+        return this;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Whether a task that failed on the given attempt should be tried again.
+     *
+     * @param failure       the failure of the attempt.
+     * @param attemptNumber number of the failed attempt, starting from 1.
+     */
+    public boolean shouldRetry(@NonNull Throwable failure, int attemptNumber) {
+        return attemptNumber < maxAttempts && retryPredicate.isRetryable(failure);
+    }
+
+    /**
+     * Delay before the given retry, with jitter applied.
+     *
+     * @param attemptNumber number of the failed attempt, starting from 1.
+     */
+    public long getBackoffMillis(int attemptNumber) {
+        double backoff = initialBackoffMillis * Math.pow(backoffMultiplier, attemptNumber - 1);
+        double capped = Math.min(backoff, maxBackoffMillis);
+        double jitter;
+        synchronized (random) {
+            jitter = random.nextDouble();
+        }
+        return (long) (capped * (1 - jitterFactor * jitter));
+    }
+}
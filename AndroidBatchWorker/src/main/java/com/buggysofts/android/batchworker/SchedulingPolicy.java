@@ -0,0 +1,82 @@
+package com.buggysofts.android.batchworker;
+
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Comparator;
+
+/**
+ * Decides the order in which the data items of a batch are processed, instead of the input order.
+ * See {@link BatchWorker#setSchedulingPolicy(SchedulingPolicy)}.
+ * <br>
+ * Data items with a deadline come first, earliest deadline first. The remaining ties are broken by
+ * the priority comparator (smaller first), then by the input order. The order may depend on state
+ * that changes while the batch runs (e.g. the items visible on screen), in which case
+ * {@link BatchWorker#reprioritize()} must be called after each change.
+ */
+public class SchedulingPolicy<T> {
+    /**
+     * Deadline of a data item without one.
+     */
+    public static final long NO_DEADLINE = Long.MAX_VALUE;
+
+    /**
+     * Extracts the deadline of a data item.
+     */
+    public interface DeadlineExtractor<T> {
+        /**
+         * @return the deadline of the data item in the {@link SystemClock#elapsedRealtime()} time base,
+         * or {@link #NO_DEADLINE}.
+         */
+        public long getDeadline(T dataItem);
+    }
+
+    private final Comparator<? super T> priorityComparator;
+    private final DeadlineExtractor<T> deadlineExtractor;
+
+    /**
+     * @param priorityComparator orders the data items by priority, highest priority first, or null.
+     * @param deadlineExtractor  extracts the deadlines of the data items, or null.
+     */
+    public SchedulingPolicy(@Nullable Comparator<? super T> priorityComparator,
+                            @Nullable DeadlineExtractor<T> deadlineExtractor) {
+        if (priorityComparator == null && deadlineExtractor == null) {
+            throw new IllegalArgumentException("priorityComparator or deadlineExtractor must be set");
+        }
+        this.priorityComparator = priorityComparator;
+        this.deadlineExtractor = deadlineExtractor;
+    }
+
+    /**
+     * @param priorityComparator orders the data items by priority, highest priority first.
+     */
+    public SchedulingPolicy(@NonNull Comparator<? super T> priorityComparator) {
+        this(priorityComparator, null);
+    }
+
+    int compare(T first, T second) {
+        if (deadlineExtractor != null) {
+            int byDeadline = Long.compare(
+                deadlineExtractor.getDeadline(first),
+                deadlineExtractor.getDeadline(second)
+            );
+            if (byDeadline != 0) {
+                return byDeadline;
+            }
+        }
+        return priorityComparator != null ? priorityComparator.compare(first, second) : 0;
+    }
+
+    /**
+     * Whether the deadline of the data item has passed.
+     */
+    boolean isPastDeadline(T dataItem) {
+        if (deadlineExtractor == null) {
+            return false;
+        }
+        long deadline = deadlineExtractor.getDeadline(dataItem);
+        return deadline != NO_DEADLINE && Platform.elapsedRealtime() > deadline;
+    }
+}
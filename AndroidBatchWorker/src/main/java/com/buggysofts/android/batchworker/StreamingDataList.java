@@ -0,0 +1,90 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A list view over a {@link DataSource}. Data items are pulled from the source when they are first
+ * accessed, and are dropped when the batch releases them, so only a small window of the data items
+ * is held in memory at any time.
+ * <br>
+ * Accessing a released data item throws an {@link IndexOutOfBoundsException}. Until the source is
+ * exhausted, {@link #size()} is an estimate - the size hint of the source if it has one, the number
+ * of data items pulled so far otherwise.
+ */
+class StreamingDataList<T> extends AbstractList<T> {
+    private final DataSource<T> dataSource;
+    private final Map<Integer, T> window;
+    private int pulledCount;
+    private boolean exhausted;
+
+    StreamingDataList(@NonNull DataSource<T> dataSource) {
+        this.dataSource = dataSource;
+        this.window = new HashMap<>();
+        this.pulledCount = 0;
+        this.exhausted = false;
+    }
+
+    @Override
+    public synchronized T get(int index) {
+        if (availableEnd(index, index + 1) <= index) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + pulledCount);
+        }
+        T item = window.get(index);
+        if (item == null && !window.containsKey(index)) {
+            throw new IndexOutOfBoundsException("Data item at " + index + " was already released");
+        }
+        return item;
+    }
+
+    @Override
+    public synchronized int size() {
+        int sizeHint = getSizeHint();
+        return sizeHint == DataSource.SIZE_UNKNOWN ? pulledCount : sizeHint;
+    }
+
+    /**
+     * Pull data items until the given end index, or until the source is exhausted.
+     *
+     * @return the end (exclusive) of the available range starting at {@code from}, at most {@code to}.
+     */
+    synchronized int availableEnd(int from, int to) {
+        while (!exhausted && pulledCount < to) {
+            if (dataSource.hasNext()) {
+                window.put(pulledCount++, dataSource.next());
+            } else {
+                exhausted = true;
+            }
+        }
+        return Math.max(from, Math.min(pulledCount, to));
+    }
+
+    /**
+     * Drop the data items of the given range, they will not be accessed anymore.
+     */
+    synchronized void release(int from, int to) {
+        for (int i = from; i < to; ++i) {
+            window.remove(i);
+        }
+    }
+
+    /**
+     * Exact size once the source is exhausted, otherwise the size hint of the source.
+     */
+    synchronized int getSizeHint() {
+        if (exhausted) {
+            return pulledCount;
+        }
+        int sizeHint = dataSource.getSizeHint();
+        return sizeHint == DataSource.SIZE_UNKNOWN ?
+            DataSource.SIZE_UNKNOWN :
+            Math.max(sizeHint, pulledCount);
+    }
+
+    void close() {
+        dataSource.close();
+    }
+}
@@ -0,0 +1,20 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Thrown for a task attempt that exceeded its timeout, see
+ * {@link BatchWorker#setTaskTimeout(long, TimeoutAction)}.
+ */
+public class TaskTimeoutException extends RuntimeException {
+    private final long timeoutMillis;
+
+    public TaskTimeoutException(long timeoutMillis, @Nullable Throwable cause) {
+        super("Task timed out after " + timeoutMillis + "ms", cause);
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+}
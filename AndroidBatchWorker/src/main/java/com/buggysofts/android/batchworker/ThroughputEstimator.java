@@ -0,0 +1,63 @@
+package com.buggysofts.android.batchworker;
+
+/**
+ * Estimates the throughput of a batch in constant memory, as an exponentially weighted moving average
+ * of the rate at which work completes, sampled at most every {@link #SAMPLE_INTERVAL_NANOS}.
+ * <br>
+ * The rate is measured on the wall clock, over all the workers, so it follows changes in parallelism
+ * (and in the duration of the tasks) within a few time constants, while smoothing out the jitter of
+ * individual tasks. The weight of a sample decays with its age, not with the number of samples, so
+ * irregular sampling does not skew the average.
+ */
+class ThroughputEstimator {
+    static final long SAMPLE_INTERVAL_NANOS = 250_000_000L;
+    private static final double TIME_CONSTANT_NANOS = 10e9;
+
+    private long startNanos;
+    private double startWork;
+    private long lastSampleNanos;
+    private double lastSampleWork;
+    private double rate;
+    private boolean sampled;
+
+    /**
+     * Start measuring. Work completed before the start does not count towards the throughput.
+     *
+     * @param completedWork work completed before the start, e.g. restored from a checkpoint.
+     */
+    synchronized void start(long nowNanos, double completedWork) {
+        startNanos = nowNanos;
+        startWork = completedWork;
+        lastSampleNanos = nowNanos;
+        lastSampleWork = completedWork;
+        rate = 0;
+        sampled = false;
+    }
+
+    /**
+     * Take a sample of the completed work, if the last one is old enough.
+     *
+     * @param completedWork total work completed so far, e.g. the number of completed data items.
+     * @return the estimated throughput, in work per second.
+     */
+    synchronized double update(long nowNanos, double completedWork) {
+        long elapsed = nowNanos - lastSampleNanos;
+        if (elapsed >= SAMPLE_INTERVAL_NANOS) {
+            double sampleRate = (completedWork - lastSampleWork) * 1e9 / elapsed;
+            if (sampled) {
+                double alpha = 1 - Math.exp(-elapsed / TIME_CONSTANT_NANOS);
+                rate += alpha * (sampleRate - rate);
+            } else {
+                rate = sampleRate;
+                sampled = true;
+            }
+            lastSampleNanos = nowNanos;
+            lastSampleWork = completedWork;
+        } else if (!sampled) {
+            // until the first sample, the average since the start is the best guess
+            long sinceStart = nowNanos - startNanos;
+            return sinceStart > 0 ? (completedWork - startWork) * 1e9 / sinceStart : 0;
+        }
+        return Math.max(rate, 0);
+    }
+}
@@ -0,0 +1,20 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+
+final class Throwables {
+    private Throwables() {
+    }
+
+    /**
+     * Re-throws the specified throwable as is, even a checked one. Tasks may throw checked throwables
+     * the compiler does not know of (e.g. from Kotlin), and the retry and failure handling must see
+     * them unwrapped.
+     *
+     * @return never returns, declared so callers can {@code throw} it to end their flow.
+     */
+    @SuppressWarnings("unchecked")
+    static <E extends Throwable> RuntimeException rethrow(@NonNull Throwable throwable) throws E {
+        throw (E) throwable;
+    }
+}
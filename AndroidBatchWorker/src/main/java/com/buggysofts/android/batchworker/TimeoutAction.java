@@ -0,0 +1,23 @@
+package com.buggysofts.android.batchworker;
+
+/**
+ * What happens to a data item whose task attempt timed out, see
+ * {@link BatchWorker#setTaskTimeout(long, TimeoutAction)}.
+ */
+public enum TimeoutAction {
+    /**
+     * The data item fails with a {@link TaskTimeoutException}, without being retried.
+     */
+    FAIL,
+
+    /**
+     * The data item completes with a null result, and is not reported as failed.
+     */
+    SKIP,
+
+    /**
+     * The task is attempted again as the {@link RetryPolicy} allows (once more if there is none),
+     * then the data item fails with a {@link TaskTimeoutException}.
+     */
+    RETRY
+}
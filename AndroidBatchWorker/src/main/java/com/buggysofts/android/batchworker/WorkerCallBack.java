@@ -40,20 +40,27 @@ public interface WorkerCallBack<T, V> {
     /**
      * Description for current task executed by {@link #performTask(List, int)}.
      * This can be the name or any other describable property of the data, e.g file name.
+     * It is called on the worker threads, possibly by several of them at the same time, so it must be
+     * thread-safe, and must not touch any view; the returned text is displayed on the ui thread.
      *
      * @param dataList The input data list passed to the constructor.
      * @param activeDataIndex Index of the data item for which the task is going to be performed.
      */
+    @WorkerThread
     public String taskLabelDescriptor(@NonNull List<T> dataList, int activeDataIndex);
 
     /**
      * Progress description for current task executed by {@link #performTask(List, int)}.
      * This can be something like "3/20" where total number of data item is 20 and we are working
-     * on a data at position 3.
+     * on a data at position 3. The throughput and the remaining time are available from
+     * {@link BatchWorker#getProgressStream()}, whose {@link ProgressStream#getLatest()} is cheap to call here.
+     * Like {@link #taskLabelDescriptor(List, int)}, it is called on the worker threads, possibly at the
+     * same time, so it must be thread-safe, and must not touch any view.
      *
      * @param dataList The input data list passed to the constructor.
      * @param activeDataIndex Index of the data item for which the task is going to be performed.
      */
+    @WorkerThread
     public String taskProgressDescriptor(@NonNull List<T> dataList, int activeDataIndex);
 
     /**
@@ -0,0 +1,106 @@
+package com.buggysofts.android.batchworker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+public class DiskResultCacheTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void get_returnsThePutResult() throws IOException {
+        DiskResultCache<String, String> cache = new DiskResultCache<>(temporaryFolder.newFolder(), 100, new StringSerializer());
+        cache.put("a", "1");
+        cache.put("a", "2");
+
+        assertEquals("2", cache.get("a"));
+        assertNull(cache.get("missing"));
+    }
+
+    @Test
+    public void put_evictsToTheMaximumSize() throws IOException {
+        File directory = temporaryFolder.newFolder();
+        DiskResultCache<String, String> cache = new DiskResultCache<>(directory, 10, new StringSerializer());
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        cache.put("c", "cccc");
+
+        // 12 > 10, so one of them goes
+        int present = 0;
+        for (String key : new String[]{"a", "b", "c"}) {
+            if (cache.get(key) != null) {
+                ++present;
+            }
+        }
+        assertEquals(2, present);
+        assertEquals(2, directory.listFiles().length);
+    }
+
+    @Test
+    public void put_doesNotEvictTheTempFilesOfOtherPuts() throws IOException {
+        File directory = temporaryFolder.newFolder();
+        DiskResultCache<String, String> cache = new DiskResultCache<>(directory, 10, new StringSerializer());
+        File tempFile = writeFile(new File(directory, "in-progress.tmp"), 100);
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+
+        // the temp file is neither counted nor deleted
+        assertTrue(tempFile.exists());
+        assertEquals("aaaa", cache.get("a"));
+        assertEquals("bbbb", cache.get("b"));
+
+        cache.clear();
+        assertTrue(tempFile.exists());
+        assertNull(cache.get("a"));
+    }
+
+    @Test
+    public void constructor_deletesStaleTempFiles() throws IOException {
+        File directory = temporaryFolder.newFolder();
+        File tempFile = writeFile(new File(directory, "stale.tmp"), 100);
+        DiskResultCache<String, String> cache = new DiskResultCache<>(directory, 10, new StringSerializer());
+        assertFalse(tempFile.exists());
+
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        assertEquals("aaaa", cache.get("a"));
+        assertEquals("bbbb", cache.get("b"));
+    }
+
+    private static File writeFile(File file, int length) throws IOException {
+        try (FileOutputStream outputStream = new FileOutputStream(file)) {
+            outputStream.write(new byte[length]);
+        }
+        return file;
+    }
+
+    private static class StringSerializer implements ResultSerializer<String> {
+        @NonNull
+        @Override
+        public byte[] serialize(@Nullable String result) {
+            return result.getBytes(UTF_8);
+        }
+
+        @Nullable
+        @Override
+        public String deserialize(@NonNull byte[] bytes) {
+            return new String(bytes, UTF_8);
+        }
+    }
+}
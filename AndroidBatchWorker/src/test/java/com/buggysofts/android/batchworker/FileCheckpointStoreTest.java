@@ -0,0 +1,126 @@
+package com.buggysofts.android.batchworker;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+
+public class FileCheckpointStoreTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void load_returnsAppendedRecords() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "checkpoint");
+        FileCheckpointStore store = new FileCheckpointStore(file);
+        store.append(0, new byte[]{1, 2, 3});
+        store.append(5, new byte[0]);
+        store.append(2, new byte[]{4});
+        store.close();
+
+        Map<Integer, byte[]> records = new FileCheckpointStore(file).load();
+        assertEquals(3, records.size());
+        assertArrayEquals(new byte[]{1, 2, 3}, records.get(0));
+        assertArrayEquals(new byte[0], records.get(5));
+        assertArrayEquals(new byte[]{4}, records.get(2));
+    }
+
+    @Test
+    public void load_withoutFile_isEmpty() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "missing");
+        assertTrue(new FileCheckpointStore(file).load().isEmpty());
+    }
+
+    @Test
+    public void load_dropsTruncatedRecord() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "checkpoint");
+        FileCheckpointStore store = new FileCheckpointStore(file);
+        store.append(0, new byte[]{1, 2, 3});
+        store.append(1, new byte[]{4, 5, 6});
+        store.close();
+
+        // cut the second record short, as a process death would
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(randomAccessFile.length() - 2);
+        }
+
+        Map<Integer, byte[]> records = new FileCheckpointStore(file).load();
+        assertEquals(1, records.size());
+        assertArrayEquals(new byte[]{1, 2, 3}, records.get(0));
+    }
+
+    @Test
+    public void load_stopsAtNegativeLength() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "checkpoint");
+        FileCheckpointStore store = new FileCheckpointStore(file);
+        store.append(0, new byte[]{1});
+        store.close();
+        appendRawRecord(file, 1, -5, new byte[8]);
+
+        Map<Integer, byte[]> records = new FileCheckpointStore(file).load();
+        assertEquals(1, records.size());
+        assertArrayEquals(new byte[]{1}, records.get(0));
+    }
+
+    @Test
+    public void load_stopsAtLengthBeyondFile() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "checkpoint");
+        FileCheckpointStore store = new FileCheckpointStore(file);
+        store.append(0, new byte[]{1});
+        store.close();
+        appendRawRecord(file, 1, Integer.MAX_VALUE, new byte[]{2, 3});
+
+        Map<Integer, byte[]> records = new FileCheckpointStore(file).load();
+        assertEquals(1, records.size());
+        assertFalse(records.containsKey(1));
+    }
+
+    @Test
+    public void append_afterCorruptTail_isLoadedOnResume() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "checkpoint");
+        FileCheckpointStore store = new FileCheckpointStore(file);
+        store.append(0, new byte[]{1});
+        store.close();
+        appendRawRecord(file, 1, -1, new byte[]{9, 9, 9});
+
+        // resume: load, then checkpoint more data items
+        FileCheckpointStore resumedStore = new FileCheckpointStore(file);
+        assertEquals(1, resumedStore.load().size());
+        resumedStore.append(1, new byte[]{2});
+        resumedStore.close();
+
+        Map<Integer, byte[]> records = new FileCheckpointStore(file).load();
+        assertEquals(2, records.size());
+        assertArrayEquals(new byte[]{2}, records.get(1));
+    }
+
+    @Test
+    public void clear_deletesTheFile() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "checkpoint");
+        FileCheckpointStore store = new FileCheckpointStore(file);
+        store.append(0, new byte[]{1});
+        store.clear();
+
+        assertFalse(file.exists());
+        assertTrue(store.load().isEmpty());
+    }
+
+    private static void appendRawRecord(File file, int index, int length, byte[] bytes) throws IOException {
+        try (DataOutputStream outputStream = new DataOutputStream(new FileOutputStream(file, true))) {
+            outputStream.writeInt(index);
+            outputStream.writeInt(length);
+            outputStream.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.buggysofts.android.batchworker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs headless batches on the jvm, where the android apis are stubs that throw.
+ */
+public class HeadlessBatchWorkerTest {
+    private static final long TIMEOUT_SECONDS = 10;
+
+    private BatchWorkerEngine engine;
+
+    @Before
+    public void setUp() {
+        engine = new BatchWorkerEngine(2, 4);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        engine.shutdown();
+        engine.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void sequentialBatch_completesWithResultsInInputOrder() throws InterruptedException {
+        RecordingCallBack callBack = new RecordingCallBack(-1);
+        new BatchWorker<>(Arrays.asList(1, 2, 3, 4, 5), callBack)
+            .setEngine(engine)
+            .start();
+
+        callBack.awaitPostWork();
+        assertEquals(1, callBack.preWorkCount.get());
+        assertEquals(1, callBack.postWorkCount.get());
+        assertTrue(callBack.completed);
+        assertEquals(Arrays.asList(10, 20, 30, 40, 50), callBack.results);
+    }
+
+    @Test
+    public void parallelBatch_completesWithResultsInInputOrder() throws InterruptedException {
+        List<Integer> dataItems = new ArrayList<>();
+        for (int i = 0; i < 200; ++i) {
+            dataItems.add(i);
+        }
+        RecordingCallBack callBack = new RecordingCallBack(-1);
+        new BatchWorker<>(dataItems, callBack)
+            .setEngine(engine)
+            .setParallelism(4)
+            .start();
+
+        callBack.awaitPostWork();
+        assertTrue(callBack.completed);
+        assertEquals(200, callBack.results.size());
+        for (int i = 0; i < 200; ++i) {
+            assertEquals(Integer.valueOf(i * 10), callBack.results.get(i));
+        }
+    }
+
+    @Test
+    public void checkedFailure_isRetriedAndCollected() throws InterruptedException {
+        RecordingCallBack callBack = new RecordingCallBack(2);
+        AtomicReference<Throwable> retried = new AtomicReference<>(null);
+        BatchWorker<Integer, Integer> batchWorker = new BatchWorker<>(Arrays.asList(1, 2, 3, 4), callBack)
+            .setEngine(engine)
+            .setRetryPolicy(
+                new RetryPolicy(3, 1, 1).setRetryPredicate(
+                    new RetryPolicy.RetryPredicate() {
+                        @Override
+                        public boolean isRetryable(@NonNull Throwable failure) {
+                            retried.set(failure);
+                            return failure instanceof IOException;
+                        }
+                    }
+                )
+            )
+            .setErrorMode(ErrorMode.COLLECT);
+        batchWorker.start();
+
+        callBack.awaitPostWork();
+        assertTrue(callBack.completed);
+        assertTrue(retried.get() instanceof IOException);
+        assertEquals(3, callBack.failingAttemptCount.get());
+        assertEquals(Integer.valueOf(20), callBack.results.get(1));
+        assertNull(callBack.results.get(2));
+        assertEquals(1, batchWorker.getFailures().size());
+        assertEquals(2, batchWorker.getFailures().get(0).getIndex());
+        assertTrue(batchWorker.getFailures().get(0).getThrowable() instanceof IOException);
+    }
+
+    @Test
+    public void failFast_endsTheBatchWithPostWork() throws InterruptedException {
+        RecordingCallBack callBack = new RecordingCallBack(2);
+        new BatchWorker<>(Arrays.asList(1, 2, 3, 4), callBack)
+            .setEngine(engine)
+            .start();
+
+        callBack.awaitPostWork();
+        assertEquals(1, callBack.postWorkCount.get());
+        assertFalse(callBack.completed);
+    }
+
+    @Test
+    public void interruptedBatchThread_cancelsTheBatch() throws InterruptedException {
+        AtomicReference<Thread> batchThread = new AtomicReference<>(null);
+        RecordingCallBack callBack = new InterruptingCallBack(batchThread);
+        new BatchWorker<>(Arrays.asList(1, 2, 3, 4), callBack)
+            .setEngine(engine)
+            .setParallelism(2)
+            .start();
+
+        callBack.awaitPostWork();
+        assertEquals(1, callBack.postWorkCount.get());
+        assertFalse(callBack.completed);
+        assertTrue(callBack.results.isEmpty());
+    }
+
+    @Test
+    public void interruptedBatchThread_cancelsThePipeline() throws InterruptedException {
+        AtomicReference<Thread> batchThread = new AtomicReference<>(null);
+        RecordingCallBack callBack = new InterruptingCallBack(batchThread);
+        List<Integer> dataItems = Arrays.asList(1, 2, 3, 4);
+        new BatchWorker<>(dataItems, callBack)
+            .setEngine(engine)
+            .setPipeline(
+                Pipeline.startWith(
+                    new PipelineStage<Integer, Integer>() {
+                        @Override
+                        public Integer process(Integer input, int activeDataIndex) {
+                            return callBack.performTask(dataItems, activeDataIndex);
+                        }
+                    },
+                    2
+                )
+            )
+            .start();
+
+        callBack.awaitPostWork();
+        assertEquals(1, callBack.postWorkCount.get());
+        assertFalse(callBack.completed);
+        assertTrue(callBack.results.isEmpty());
+    }
+
+    @Test
+    public void pipeline_appliesTheKeyConcurrencyLimitToEachStage() throws InterruptedException {
+        AtomicInteger running = new AtomicInteger(0);
+        AtomicInteger maxRunning = new AtomicInteger(0);
+        PipelineStage<Integer, Integer> stage = new PipelineStage<Integer, Integer>() {
+            @Override
+            public Integer process(Integer input, int activeDataIndex) {
+                int count = running.incrementAndGet();
+                while (true) {
+                    int max = maxRunning.get();
+                    if (count <= max || maxRunning.compareAndSet(max, count)) {
+                        break;
+                    }
+                }
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    throw new CancellationException("Task was cancelled");
+                } finally {
+                    running.decrementAndGet();
+                }
+                return input * 10;
+            }
+        };
+        RecordingCallBack callBack = new RecordingCallBack(-1);
+        new BatchWorker<>(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8), callBack)
+            .setEngine(engine)
+            .setKeyConcurrencyLimit(
+                new KeyExtractor<Integer, String>() {
+                    @NonNull
+                    @Override
+                    public String getKey(Integer dataItem) {
+                        return "host";
+                    }
+                },
+                1
+            )
+            .setPipeline(Pipeline.startWith(stage, 4))
+            .start();
+
+        callBack.awaitPostWork();
+        assertTrue(callBack.completed);
+        assertEquals(Arrays.asList(10, 20, 30, 40, 50, 60, 70, 80), callBack.results);
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void failingLongPreWork_closesTheDataSource() throws InterruptedException {
+        CountDownLatch closed = new CountDownLatch(1);
+        Iterator<Integer> iterator = Arrays.asList(1, 2, 3).iterator();
+        DataSource<Integer> dataSource = new DataSource<Integer>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Integer next() {
+                return iterator.next();
+            }
+
+            @Override
+            public int getSizeHint() {
+                return 3;
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        };
+        RecordingCallBack callBack = new RecordingCallBack(-1) {
+            @Override
+            public void onLongPreWork(@NonNull List<Integer> dataList) {
+                throw new IllegalStateException("Failed pre work");
+            }
+        };
+        new BatchWorker<>(dataSource, callBack)
+            .setEngine(engine)
+            .start();
+
+        callBack.awaitPostWork();
+        assertFalse(callBack.completed);
+        assertTrue(closed.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void shutdown_completesTheQueuedBatches() throws InterruptedException {
+        BatchWorkerEngine singleBatchEngine = new BatchWorkerEngine(1, 2);
+        RecordingCallBack first = new RecordingCallBack(-1);
+        RecordingCallBack second = new RecordingCallBack(-1);
+        new BatchWorker<>(Arrays.asList(1, 2, 3), first)
+            .setEngine(singleBatchEngine)
+            .setParallelism(2)
+            .start();
+        new BatchWorker<>(Arrays.asList(4, 5, 6), second)
+            .setEngine(singleBatchEngine)
+            .setParallelism(2)
+            .start();
+        singleBatchEngine.shutdown();
+
+        assertTrue(singleBatchEngine.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(first.completed);
+        assertTrue(second.completed);
+        assertEquals(Arrays.asList(40, 50, 60), second.results);
+    }
+
+    /**
+     * Interrupts the batch thread from the first task, which then blocks until the task is cancelled.
+     */
+    private static class InterruptingCallBack extends RecordingCallBack {
+        final AtomicReference<Thread> batchThread;
+
+        InterruptingCallBack(AtomicReference<Thread> batchThread) {
+            super(-1);
+            this.batchThread = batchThread;
+        }
+
+        @Override
+        public void onLongPreWork(@NonNull List<Integer> dataList) {
+            batchThread.set(Thread.currentThread());
+        }
+
+        @Override
+        public Integer performTask(@NonNull List<Integer> dataList, int activeDataIndex) {
+            if (activeDataIndex == 0) {
+                batchThread.get().interrupt();
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(TIMEOUT_SECONDS));
+                } catch (InterruptedException e) {
+                    throw new CancellationException("Task was cancelled");
+                }
+            }
+            return super.performTask(dataList, activeDataIndex);
+        }
+    }
+
+    /**
+     * Multiplies the data items by 10, failing the one at {@code failingIndex} with a checked exception.
+     */
+    private static class RecordingCallBack implements WorkerCallBack<Integer, Integer> {
+        final int failingIndex;
+        final AtomicInteger preWorkCount = new AtomicInteger(0);
+        final AtomicInteger postWorkCount = new AtomicInteger(0);
+        final AtomicInteger failingAttemptCount = new AtomicInteger(0);
+        final CountDownLatch postWorkLatch = new CountDownLatch(1);
+        volatile List<Integer> results;
+        volatile boolean completed;
+
+        RecordingCallBack(int failingIndex) {
+            this.failingIndex = failingIndex;
+        }
+
+        void awaitPostWork() throws InterruptedException {
+            assertTrue(postWorkLatch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        }
+
+        @Override
+        public void onShortPreWork() {
+            preWorkCount.incrementAndGet();
+        }
+
+        @Override
+        public void onLongPreWork(@NonNull List<Integer> dataList) {
+        }
+
+        @Override
+        public String longPreWorkDescriptor() {
+            return null;
+        }
+
+        @Override
+        public Integer performTask(@NonNull List<Integer> dataList, int activeDataIndex) {
+            if (activeDataIndex == failingIndex) {
+                failingAttemptCount.incrementAndGet();
+                // as thrown by kotlin code, which has no checked exceptions
+                throw Throwables.rethrow(new IOException("Failed " + activeDataIndex));
+            }
+            return dataList.get(activeDataIndex) * 10;
+        }
+
+        @Override
+        public String taskLabelDescriptor(@NonNull List<Integer> dataList, int activeDataIndex) {
+            return null;
+        }
+
+        @Override
+        public String taskProgressDescriptor(@NonNull List<Integer> dataList, int activeDataIndex) {
+            return null;
+        }
+
+        @Override
+        public void onLongPostWork(@NonNull List<Integer> results) {
+        }
+
+        @Override
+        public String longPostWorkDescriptor() {
+            return null;
+        }
+
+        @Override
+        public void onShortPostWork(@NonNull List<Integer> results, boolean completed) {
+            this.results = new ArrayList<>(results);
+            this.completed = completed;
+            postWorkCount.incrementAndGet();
+            postWorkLatch.countDown();
+        }
+    }
+}
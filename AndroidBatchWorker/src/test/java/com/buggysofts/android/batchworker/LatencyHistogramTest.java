@@ -0,0 +1,68 @@
+package com.buggysofts.android.batchworker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+    @Test
+    public void getPercentile_isZeroWhenEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getTotalCount());
+        assertEquals(0, histogram.getPercentile(50));
+    }
+
+    @Test
+    public void getPercentile_isExactForSmallValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int value = 0; value < 8; ++value) {
+            histogram.record(value, 1);
+        }
+
+        assertEquals(0, histogram.getPercentile(10));
+        assertEquals(3, histogram.getPercentile(50));
+        assertEquals(7, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void getPercentile_isAnUpperBoundWithinAnEighth() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 10_000; ++micros) {
+            histogram.record(micros * 1_000L, 1);
+        }
+
+        assertEquals(10_000, histogram.getTotalCount());
+        assertWithinAnEighthAbove(5_000_000L, histogram.getPercentile(50));
+        assertWithinAnEighthAbove(9_500_000L, histogram.getPercentile(95));
+        assertWithinAnEighthAbove(9_900_000L, histogram.getPercentile(99));
+        assertWithinAnEighthAbove(10_000_000L, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void record_countsEachTime() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1_000, 99);
+        histogram.record(1_000_000, 1);
+
+        assertEquals(100, histogram.getTotalCount());
+        assertWithinAnEighthAbove(1_000L, histogram.getPercentile(99));
+        assertWithinAnEighthAbove(1_000_000L, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void record_clampsNegativeAndHandlesHugeDurations() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5, 1);
+        histogram.record(Long.MAX_VALUE, 1);
+
+        assertEquals(0, histogram.getPercentile(50));
+        assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+    }
+
+    private static void assertWithinAnEighthAbove(long expected, long actual) {
+        assertTrue("expected at least " + expected + " but was " + actual, actual >= expected);
+        assertTrue("expected at most " + expected * 9 / 8 + " but was " + actual, actual <= expected * 9 / 8);
+    }
+}
@@ -0,0 +1,118 @@
+package com.buggysofts.android.batchworker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class LruResultCacheTest {
+    @Test
+    public void put_evictsTheLeastRecentlyUsed() {
+        LruResultCache<String, String> cache = new LruResultCache<>(2);
+        cache.put("a", "1");
+        cache.put("b", "2");
+
+        // reading a makes b the least recently used
+        assertEquals("1", cache.get("a"));
+        cache.put("c", "3");
+
+        assertEquals(2, cache.size());
+        assertEquals("1", cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals("3", cache.get("c"));
+    }
+
+    @Test
+    public void put_replacingAnEntryDoesNotEvict() {
+        LruResultCache<String, String> cache = new LruResultCache<>(2);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.put("a", "3");
+
+        assertEquals(2, cache.size());
+        assertEquals("3", cache.get("a"));
+        assertEquals("2", cache.get("b"));
+    }
+
+    @Test
+    public void put_evictsByWeight() {
+        LruResultCache<String, String> cache = new LruResultCache<>(10, new LengthWeigher(), null);
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        cache.put("c", "cccc");
+
+        // 12 > 10, so a goes
+        assertEquals(2, cache.size());
+        assertNull(cache.get("a"));
+
+        // a heavier replacement evicts the others, the newest is kept even though it is too heavy
+        cache.put("c", "cccccccccccc");
+        assertEquals(1, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals("cccccccccccc", cache.get("c"));
+    }
+
+    @Test
+    public void get_promotesFromTheNextTier() {
+        MapResultCache nextTier = new MapResultCache();
+        nextTier.put("a", "1");
+        LruResultCache<String, String> cache = new LruResultCache<>(2, null, nextTier);
+
+        assertEquals(0, cache.size());
+        assertEquals("1", cache.get("a"));
+        assertEquals(1, cache.size());
+        assertNull(cache.get("missing"));
+    }
+
+    @Test
+    public void put_writesThroughToTheNextTier() {
+        MapResultCache nextTier = new MapResultCache();
+        LruResultCache<String, String> cache = new LruResultCache<>(1, null, nextTier);
+        cache.put("a", "1");
+        cache.put("b", "2");
+
+        // evicted from memory, still in the next tier
+        assertEquals(1, cache.size());
+        assertEquals("1", nextTier.get("a"));
+        assertEquals("1", cache.get("a"));
+    }
+
+    @Test
+    public void clear_removesTheEntriesOfThisTier() {
+        MapResultCache nextTier = new MapResultCache();
+        LruResultCache<String, String> cache = new LruResultCache<>(2, null, nextTier);
+        cache.put("a", "1");
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertEquals("1", nextTier.get("a"));
+    }
+
+    private static class LengthWeigher implements LruResultCache.Weigher<String, String> {
+        @Override
+        public long weigh(@NonNull String key, @NonNull String result) {
+            return result.length();
+        }
+    }
+
+    private static class MapResultCache implements ResultCache<String, String> {
+        private final Map<String, String> entries = new HashMap<>();
+
+        @Nullable
+        @Override
+        public String get(@NonNull String key) {
+            return entries.get(key);
+        }
+
+        @Override
+        public void put(@NonNull String key, @NonNull String result) {
+            entries.put(key, result);
+        }
+    }
+}
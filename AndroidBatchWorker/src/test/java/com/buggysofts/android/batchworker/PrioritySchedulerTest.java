@@ -0,0 +1,211 @@
+package com.buggysofts.android.batchworker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+public class PrioritySchedulerTest {
+    @Test
+    public void next_followsThePolicyAndSkipsIndices() {
+        BitSet skipped = new BitSet();
+        skipped.set(3);
+        PriorityScheduler<Integer> scheduler = new PriorityScheduler<>(
+            range(6),
+            skipped,
+            new SchedulingPolicy<>(
+                new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer first, Integer second) {
+                        // highest value first
+                        return Integer.compare(second, first);
+                    }
+                }
+            ),
+            null,
+            1
+        );
+
+        assertEquals(listOf(5, 4, 2, 1, 0), drain(scheduler, 0));
+    }
+
+    @Test
+    public void next_putsDeadlinesFirst() {
+        final long[] deadlines = {SchedulingPolicy.NO_DEADLINE, 300, SchedulingPolicy.NO_DEADLINE, 100};
+        PriorityScheduler<Integer> scheduler = new PriorityScheduler<>(
+            range(4),
+            new BitSet(),
+            new SchedulingPolicy<>(
+                null,
+                new SchedulingPolicy.DeadlineExtractor<Integer>() {
+                    @Override
+                    public long getDeadline(Integer dataItem) {
+                        return deadlines[dataItem];
+                    }
+                }
+            ),
+            null,
+            1
+        );
+
+        assertEquals(listOf(3, 1, 0, 2), drain(scheduler, 0));
+    }
+
+    @Test
+    public void next_takesTheHeaviestFirst() {
+        PriorityScheduler<Integer> scheduler = new PriorityScheduler<>(
+            range(4),
+            new BitSet(),
+            null,
+            new long[]{5, 20, 5, 10},
+            2
+        );
+
+        assertEquals(listOf(1, 3, 0, 2), drain(scheduler, 0));
+    }
+
+    @Test
+    public void next_stealsTheTailOfAnotherWorker() {
+        PriorityScheduler<Integer> scheduler = new PriorityScheduler<>(range(64), new BitSet(), null, null, 2);
+
+        // worker 0 takes 0 and prefetches 1..7, worker 1 gets everything else from the shared queue
+        assertEquals(0, scheduler.next(0));
+        for (int expected = 8; expected < 64; ++expected) {
+            assertEquals(expected, scheduler.next(1));
+        }
+
+        // worker 1 steals the lower priority half of worker 0, 4..7
+        assertEquals(4, scheduler.next(1));
+        assertEquals(1, scheduler.next(0));
+        assertEquals(2, scheduler.next(0));
+        assertEquals(3, scheduler.next(0));
+
+        // and worker 0 steals back the tail of worker 1, 6..7
+        assertEquals(6, scheduler.next(0));
+        assertEquals(5, scheduler.next(1));
+        assertEquals(7, scheduler.next(0));
+        assertEquals(PriorityScheduler.NO_INDEX, scheduler.next(0));
+        assertEquals(PriorityScheduler.NO_INDEX, scheduler.next(1));
+    }
+
+    @Test
+    public void reprioritize_reordersPrefetchedItems() {
+        final int[] ranks = new int[64];
+        for (int i = 0; i < ranks.length; ++i) {
+            ranks[i] = i;
+        }
+        PriorityScheduler<Integer> scheduler = new PriorityScheduler<>(
+            range(64),
+            new BitSet(),
+            new SchedulingPolicy<>(
+                new Comparator<Integer>() {
+                    @Override
+                    public int compare(Integer first, Integer second) {
+                        return Integer.compare(ranks[first], ranks[second]);
+                    }
+                }
+            ),
+            null,
+            1
+        );
+
+        // 1..7 are prefetched by now, yet 5 must come next once it is the most urgent
+        assertEquals(0, scheduler.next(0));
+        ranks[5] = -2;
+        ranks[63] = -1;
+        scheduler.reprioritize();
+
+        assertEquals(5, scheduler.next(0));
+        assertEquals(63, scheduler.next(0));
+        assertEquals(1, scheduler.next(0));
+    }
+
+    @Test
+    public void next_handsOutEachIndexOnceAcrossThreads() throws InterruptedException {
+        final int itemCount = 10_000;
+        final int workerCount = 4;
+        final PriorityScheduler<Integer> scheduler = new PriorityScheduler<>(
+            range(itemCount),
+            new BitSet(),
+            null,
+            null,
+            workerCount
+        );
+        final AtomicIntegerArray handOuts = new AtomicIntegerArray(itemCount);
+        Thread[] threads = new Thread[workerCount];
+        for (int w = 0; w < workerCount; ++w) {
+            final int worker = w;
+            threads[w] = new Thread(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int index = scheduler.next(worker);
+                             index != PriorityScheduler.NO_INDEX;
+                             index = scheduler.next(worker)) {
+                            handOuts.incrementAndGet(index);
+                        }
+                    }
+                }
+            );
+            threads[w].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < itemCount; ++i) {
+            assertEquals("hand-outs of " + i, 1, handOuts.get(i));
+        }
+        for (int w = 0; w < workerCount; ++w) {
+            assertEquals(PriorityScheduler.NO_INDEX, scheduler.next(w));
+        }
+    }
+
+    @Test
+    public void policy_reportsPastDeadlines() {
+        SchedulingPolicy<Long> policy = new SchedulingPolicy<>(
+            null,
+            new SchedulingPolicy.DeadlineExtractor<Long>() {
+                @Override
+                public long getDeadline(Long dataItem) {
+                    return dataItem;
+                }
+            }
+        );
+
+        assertTrue(policy.isPastDeadline(Platform.elapsedRealtime() - 1_000));
+        assertFalse(policy.isPastDeadline(Platform.elapsedRealtime() + 60_000));
+        assertFalse(policy.isPastDeadline(SchedulingPolicy.NO_DEADLINE));
+    }
+
+    private static List<Integer> range(int count) {
+        List<Integer> items = new ArrayList<>(count);
+        for (int i = 0; i < count; ++i) {
+            items.add(i);
+        }
+        return items;
+    }
+
+    private static List<Integer> listOf(int... values) {
+        List<Integer> list = new ArrayList<>(values.length);
+        for (int value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    private static List<Integer> drain(PriorityScheduler<Integer> scheduler, int worker) {
+        List<Integer> order = new ArrayList<>();
+        for (int index = scheduler.next(worker); index != PriorityScheduler.NO_INDEX; index = scheduler.next(worker)) {
+            order.add(index);
+        }
+        return order;
+    }
+}
@@ -0,0 +1,60 @@
+package com.buggysofts.android.batchworker;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class ProgressFormatterTest {
+    private static final String SEPARATOR = " \u00B7 ";
+
+    private final ProgressFormatter formatter = new ProgressFormatter();
+
+    @Test
+    public void formatCount() {
+        assertEquals("42/100", formatter.formatCount(42, 100).toString());
+        assertEquals("0/0", formatter.formatCount(0, 0).toString());
+        assertEquals("7", formatter.formatCount(7, -1).toString());
+        assertEquals(
+            "-2147483648/2147483647",
+            formatter.formatCount(Integer.MIN_VALUE, Integer.MAX_VALUE).toString()
+        );
+    }
+
+    @Test
+    public void formatPercent() {
+        assertEquals("42%", formatter.formatPercent(42, 100).toString());
+        assertEquals("33%", formatter.formatPercent(1, 3).toString());
+        assertEquals("100%", formatter.formatPercent(5, 4).toString());
+        assertEquals("99%", formatter.formatPercent(Integer.MAX_VALUE - 1, Integer.MAX_VALUE).toString());
+        assertEquals("3", formatter.formatPercent(3, 0).toString());
+    }
+
+    @Test
+    public void formatCountAndEta() {
+        assertEquals("42/100" + SEPARATOR + "3:05", formatter.formatCountAndEta(42, 100, 185_000).toString());
+        assertEquals("1/2" + SEPARATOR + "0:01", formatter.formatCountAndEta(1, 2, 1).toString());
+        assertEquals("1/2" + SEPARATOR + "0:00", formatter.formatCountAndEta(1, 2, 0).toString());
+        assertEquals("1/2" + SEPARATOR + "1:02:05", formatter.formatCountAndEta(1, 2, 3_725_000).toString());
+        assertEquals("1/2" + SEPARATOR + "99:59:59", formatter.formatCountAndEta(1, 2, Long.MAX_VALUE / 2).toString());
+        assertEquals("1/2", formatter.formatCountAndEta(1, 2, ProgressSnapshot.ETA_UNKNOWN).toString());
+    }
+
+    @Test
+    public void formatCountAndThroughput() {
+        assertEquals("42/100" + SEPARATOR + "3.5/s", formatter.formatCountAndThroughput(42, 100, 3.46).toString());
+        assertEquals("1/2" + SEPARATOR + "0.0/s", formatter.formatCountAndThroughput(1, 2, -1).toString());
+        assertEquals(
+            "-2147483648/2147483647" + SEPARATOR + "2147483647.9/s",
+            formatter.formatCountAndThroughput(Integer.MIN_VALUE, Integer.MAX_VALUE, 1e18).toString()
+        );
+    }
+
+    @Test
+    public void format_replacesThePreviousText() {
+        formatter.formatCountAndEta(123_456, 999_999, 3_725_000);
+        formatter.formatCount(1, 2);
+
+        assertEquals("1/2", formatter.toString());
+        assertEquals(3, formatter.length());
+    }
+}
@@ -0,0 +1,77 @@
+package com.buggysofts.android.batchworker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class RateLimiterTest {
+    @Test
+    public void acquire_doesNotWaitWithinTheBurst() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(1, 5);
+
+        for (int i = 0; i < 5; ++i) {
+            assertEquals(0, rateLimiter.acquire(1));
+        }
+    }
+
+    @Test
+    public void acquire_waitsForTheNextPermitAfterTheBurst() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(10, 2);
+        rateLimiter.acquire(2);
+
+        long begin = System.nanoTime();
+        long waitNanos = rateLimiter.acquire(1);
+        long elapsedNanos = System.nanoTime() - begin;
+
+        // one permit takes 100ms, minus what was refilled since the burst
+        assertTrue("wait " + waitNanos, waitNanos > TimeUnit.MILLISECONDS.toNanos(80));
+        assertTrue("wait " + waitNanos, waitNanos <= TimeUnit.MILLISECONDS.toNanos(100));
+        assertTrue("elapsed " + elapsedNanos, elapsedNanos >= waitNanos);
+    }
+
+    @Test
+    public void acquire_holdsTheSteadyRate() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(100, 1);
+
+        long begin = System.nanoTime();
+        for (int i = 0; i < 21; ++i) {
+            rateLimiter.acquire(1);
+        }
+        long elapsedNanos = System.nanoTime() - begin;
+
+        // the first permit is the burst, the other 20 come every 10ms
+        assertTrue("elapsed " + elapsedNanos, elapsedNanos >= TimeUnit.MILLISECONDS.toNanos(190));
+    }
+
+    @Test
+    public void acquire_ofSeveralPermitsPaysTheDeficit() throws InterruptedException {
+        RateLimiter rateLimiter = new RateLimiter(20, 1);
+
+        // 1 permit is available, the other 2 take 100ms
+        long waitNanos = rateLimiter.acquire(3);
+        assertTrue("wait " + waitNanos, waitNanos > TimeUnit.MILLISECONDS.toNanos(90));
+        assertTrue("wait " + waitNanos, waitNanos <= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void acquire_isInterruptible() {
+        RateLimiter rateLimiter = new RateLimiter(0.1, 1);
+        try {
+            rateLimiter.acquire(1);
+            Thread.currentThread().interrupt();
+            rateLimiter.acquire(1);
+            fail("acquire was not interrupted");
+        } catch (InterruptedException e) {
+            // expected, the wait for the second permit was 10s
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsNonPositiveRate() {
+        new RateLimiter(0, 1);
+    }
+}
@@ -0,0 +1,113 @@
+package com.buggysofts.android.batchworker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ResultCollectorTest {
+    @Test
+    public void getResults_isInInputOrder() {
+        ResultCollector<String> collector = new ResultCollector<>(4, true, null, false, null);
+        collector.set(2, "c");
+        collector.set(0, "a");
+        collector.set(3, "d");
+        collector.set(1, "b");
+
+        assertEquals(Arrays.asList("a", "b", "c", "d"), collector.getResults());
+    }
+
+    @Test
+    public void getResults_growsPastTheExpectedSize() {
+        ResultCollector<String> collector = new ResultCollector<>(1, true, null, false, null);
+        collector.set(0, "a");
+        collector.set(4, "e");
+
+        assertEquals(Arrays.asList("a", null, null, null, "e"), collector.getResults());
+    }
+
+    @Test
+    public void getResults_isEmptyWithoutRetaining() {
+        RecordingConsumer consumer = new RecordingConsumer();
+        ResultCollector<String> collector = new ResultCollector<>(2, false, consumer, false, null);
+        collector.set(1, "b");
+        collector.set(0, "a");
+
+        assertTrue(collector.getResults().isEmpty());
+        assertEquals(Arrays.asList(1, 0), consumer.indices);
+    }
+
+    @Test
+    public void orderedConsumer_holdsBackLaterResults() {
+        RecordingConsumer consumer = new RecordingConsumer();
+        ResultCollector<String> collector = new ResultCollector<>(4, false, consumer, true, null);
+
+        collector.set(1, "b");
+        collector.set(3, "d");
+        assertTrue(consumer.indices.isEmpty());
+
+        collector.set(0, "a");
+        assertEquals(Arrays.asList(0, 1), consumer.indices);
+
+        collector.set(2, "c");
+        assertEquals(Arrays.asList(0, 1, 2, 3), consumer.indices);
+        assertEquals(Arrays.asList("a", "b", "c", "d"), consumer.results);
+    }
+
+    @Test
+    public void orderedConsumer_isInOrderAcrossThreads() throws InterruptedException {
+        final int resultCount = 10_000;
+        final int threadCount = 4;
+        RecordingConsumer consumer = new RecordingConsumer();
+        final ResultCollector<String> collector = new ResultCollector<>(resultCount, true, consumer, true, null);
+
+        // each thread completes a shuffled share of the results
+        final List<Integer> indices = new ArrayList<>(resultCount);
+        for (int i = 0; i < resultCount; ++i) {
+            indices.add(i);
+        }
+        Collections.shuffle(indices);
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; ++t) {
+            final int first = t;
+            threads[t] = new Thread(
+                new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int i = first; i < resultCount; i += threadCount) {
+                            int index = indices.get(i);
+                            collector.set(index, String.valueOf(index));
+                        }
+                    }
+                }
+            );
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(resultCount, consumer.indices.size());
+        List<String> results = collector.getResults();
+        for (int i = 0; i < resultCount; ++i) {
+            assertEquals(Integer.valueOf(i), consumer.indices.get(i));
+            assertEquals(String.valueOf(i), results.get(i));
+        }
+    }
+
+    private static class RecordingConsumer implements ResultConsumer<String> {
+        final List<Integer> indices = new ArrayList<>();
+        final List<String> results = new ArrayList<>();
+
+        @Override
+        public synchronized void onResult(int index, String result) {
+            indices.add(index);
+            results.add(result);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.buggysofts.android.batchworker;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class RetryPolicyTest {
+    @Test
+    public void getBackoffMillis_growsExponentiallyUpToTheCap() {
+        RetryPolicy retryPolicy = new RetryPolicy(10, 100, 1_000).setJitterFactor(0);
+
+        assertEquals(100, retryPolicy.getBackoffMillis(1));
+        assertEquals(200, retryPolicy.getBackoffMillis(2));
+        assertEquals(400, retryPolicy.getBackoffMillis(3));
+        assertEquals(800, retryPolicy.getBackoffMillis(4));
+        assertEquals(1_000, retryPolicy.getBackoffMillis(5));
+        assertEquals(1_000, retryPolicy.getBackoffMillis(9));
+    }
+
+    @Test
+    public void getBackoffMillis_followsTheMultiplier() {
+        RetryPolicy retryPolicy = new RetryPolicy(10, 10, 10_000)
+            .setBackoffMultiplier(3)
+            .setJitterFactor(0);
+
+        assertEquals(10, retryPolicy.getBackoffMillis(1));
+        assertEquals(30, retryPolicy.getBackoffMillis(2));
+        assertEquals(90, retryPolicy.getBackoffMillis(3));
+    }
+
+    @Test
+    public void getBackoffMillis_jitterStaysWithinTheFactor() {
+        RetryPolicy retryPolicy = new RetryPolicy(10, 100, 1_000).setJitterFactor(0.5);
+
+        for (int i = 0; i < 1_000; ++i) {
+            long backoff = retryPolicy.getBackoffMillis(2);
+            assertTrue("backoff " + backoff, backoff >= 100 && backoff <= 200);
+        }
+    }
+
+    @Test
+    public void shouldRetry_stopsAtMaxAttempts() {
+        RetryPolicy retryPolicy = new RetryPolicy(3, 0, 0);
+        RuntimeException failure = new RuntimeException();
+
+        assertTrue(retryPolicy.shouldRetry(failure, 1));
+        assertTrue(retryPolicy.shouldRetry(failure, 2));
+        assertFalse(retryPolicy.shouldRetry(failure, 3));
+    }
+
+    @Test
+    public void shouldRetry_followsThePredicate() {
+        RetryPolicy retryPolicy = new RetryPolicy(3, 0, 0).setRetryPredicate(
+            new RetryPolicy.RetryPredicate() {
+                @Override
+                public boolean isRetryable(@NonNull Throwable failure) {
+                    return failure instanceof IOException;
+                }
+            }
+        );
+
+        assertTrue(retryPolicy.shouldRetry(new IOException(), 1));
+        assertFalse(retryPolicy.shouldRetry(new IllegalStateException(), 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_rejectsMaxBelowInitialBackoff() {
+        new RetryPolicy(3, 1_000, 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void setJitterFactor_rejectsOutOfRange() {
+        new RetryPolicy(3, 0, 0).setJitterFactor(1.5);
+    }
+}
@@ -0,0 +1,4 @@
+# Keep the benchmarks and the package-private internals they measure.
+-keep class com.buggysofts.android.batchworker.** { *; }
+-dontobfuscate
+-ignorewarnings
@@ -0,0 +1,138 @@
+package com.buggysofts.android.batchworker;
+
+import android.content.Context;
+import android.view.View;
+import android.widget.LinearLayout;
+import android.widget.ProgressBar;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Helpers for running batches in benchmarks. The batches publish their progress on detached views,
+ * so that the whole execution loop (including ui updates) is measured without any window.
+ */
+final class BenchmarkBatches {
+    private static final long BATCH_TIMEOUT_MINUTES = 10;
+
+    private BenchmarkBatches() {
+    }
+
+    /**
+     * Create the views for external ui on the main thread.
+     */
+    @NonNull
+    static UiComponentsSelector createUi() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        UiComponentsSelector[] selector = new UiComponentsSelector[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(
+            new Runnable() {
+                @Override
+                public void run() {
+                    LinearLayout parent = new LinearLayout(context);
+                    TextView title = new TextView(context);
+                    TextView label = new TextView(context);
+                    ProgressBar progressBar = new ProgressBar(
+                        context,
+                        null,
+                        android.R.attr.progressBarStyleHorizontal
+                    );
+                    TextView progressDesc = new TextView(context);
+                    TextView cancelButton = new TextView(context);
+
+                    int id = 0;
+                    for (View view : new View[]{title, label, progressBar, progressDesc, cancelButton}) {
+                        view.setId(++id);
+                        parent.addView(view);
+                    }
+                    selector[0] = new UiComponentsSelector(parent, 1, 2, 3, 4, 5);
+                }
+            }
+        );
+        return selector[0];
+    }
+
+    @NonNull
+    static List<Integer> createItems(int itemCount) {
+        List<Integer> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; ++i) {
+            items.add(i);
+        }
+        return items;
+    }
+
+    /**
+     * Start the batch, and wait until its short postWork has run.
+     */
+    static void runToCompletion(@NonNull BatchWorker<?, ?> batchWorker, @NonNull CountDownLatch finished) {
+        batchWorker.start();
+        try {
+            if (!finished.await(BATCH_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                throw new IllegalStateException("Batch did not finish in time");
+            }
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A callback with a trivial task, that counts down the given latch when the batch is over.
+     */
+    static class TrivialCallBack extends CancellableWorkerCallBack<Integer, Integer> {
+        private final CountDownLatch finished;
+
+        TrivialCallBack(@NonNull CountDownLatch finished) {
+            this.finished = finished;
+        }
+
+        @Override
+        public void onShortPreWork() {
+        }
+
+        @Override
+        public void onLongPreWork(@NonNull List<Integer> dataList) {
+        }
+
+        @Override
+        public String longPreWorkDescriptor() {
+            return "";
+        }
+
+        @Override
+        public Integer performTask(@NonNull List<Integer> dataList,
+                                   int activeDataIndex,
+                                   @NonNull CancellationToken cancellationToken) {
+            return dataList.get(activeDataIndex) * 31;
+        }
+
+        @Override
+        public String taskLabelDescriptor(@NonNull List<Integer> dataList, int activeDataIndex) {
+            return "";
+        }
+
+        @Override
+        public String taskProgressDescriptor(@NonNull List<Integer> dataList, int activeDataIndex) {
+            return "";
+        }
+
+        @Override
+        public void onLongPostWork(@NonNull List<Integer> results) {
+        }
+
+        @Override
+        public String longPostWorkDescriptor() {
+            return "";
+        }
+
+        @Override
+        public void onShortPostWork(@NonNull List<Integer> results, boolean completed) {
+            finished.countDown();
+        }
+    }
+}
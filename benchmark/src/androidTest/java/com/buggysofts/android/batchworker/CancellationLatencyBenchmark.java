@@ -0,0 +1,99 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.annotation.NonNull;
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures the time from {@link BatchWorker#cancel()} until the short postWork has run,
+ * while every worker is blocked in a long task.
+ */
+@RunWith(Parameterized.class)
+public class CancellationLatencyBenchmark {
+    private static final long TASK_DURATION_MILLIS = 30_000L;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameter(0)
+    public int parallelism;
+
+    @Parameterized.Parameters(name = "parallelism={0}")
+    public static Collection<Object[]> parameters() {
+        return Arrays.asList(new Object[][]{{1}, {4}});
+    }
+
+    private List<Integer> items;
+    private UiComponentsSelector ui;
+    private BatchWorkerEngine engine;
+
+    @Before
+    public void setUp() {
+        items = BenchmarkBatches.createItems(100);
+        ui = BenchmarkBatches.createUi();
+
+        // every worker must get a thread, regardless of the number of processors
+        engine = new BatchWorkerEngine(1, parallelism);
+    }
+
+    @After
+    public void tearDown() {
+        engine.shutdown();
+    }
+
+    @Test
+    public void cancelBlockedTasks() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            CountDownLatch started = new CountDownLatch(parallelism);
+            CountDownLatch finished = new CountDownLatch(1);
+            BatchWorker<Integer, Integer> batchWorker = new BatchWorker<>(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                items,
+                ui,
+                new BenchmarkBatches.TrivialCallBack(finished) {
+                    @Override
+                    public Integer performTask(@NonNull List<Integer> dataList,
+                                               int activeDataIndex,
+                                               @NonNull CancellationToken cancellationToken) {
+                        started.countDown();
+                        try {
+                            Thread.sleep(TASK_DURATION_MILLIS);
+                        } catch (InterruptedException e) {
+                            // cancelled
+                        }
+                        return 0;
+                    }
+                }
+            ).setParallelism(parallelism).setEngine(engine);
+            batchWorker.start();
+            try {
+                started.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            state.resumeTiming();
+
+            batchWorker.cancel();
+            try {
+                finished.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Measures a whole batch of trivial tasks, i.e. the overhead the execution loop adds per item,
+ * in sequential and parallel mode.
+ */
+@RunWith(Parameterized.class)
+public class ExecutionLoopBenchmark {
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Parameterized.Parameter(0)
+    public int itemCount;
+
+    @Parameterized.Parameter(1)
+    public int parallelism;
+
+    @Parameterized.Parameters(name = "items={0},parallelism={1}")
+    public static Collection<Object[]> parameters() {
+        return Arrays.asList(
+            new Object[][]{
+                {10, 1}, {10, 4},
+                {1_000, 1}, {1_000, 4},
+                {100_000, 1}, {100_000, 4},
+                {1_000_000, 1}, {1_000_000, 4}
+            }
+        );
+    }
+
+    private List<Integer> items;
+    private UiComponentsSelector ui;
+
+    @Before
+    public void setUp() {
+        items = BenchmarkBatches.createItems(itemCount);
+        ui = BenchmarkBatches.createUi();
+    }
+
+    @Test
+    public void batch() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            state.pauseTiming();
+            CountDownLatch finished = new CountDownLatch(1);
+            BatchWorker<Integer, Integer> batchWorker = new BatchWorker<>(
+                InstrumentationRegistry.getInstrumentation().getTargetContext(),
+                items,
+                ui,
+                new BenchmarkBatches.TrivialCallBack(finished)
+            ).setParallelism(parallelism);
+            state.resumeTiming();
+
+            BenchmarkBatches.runToCompletion(batchWorker, finished);
+        }
+    }
+}
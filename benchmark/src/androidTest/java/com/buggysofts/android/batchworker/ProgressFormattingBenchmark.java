@@ -0,0 +1,40 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures the cost (and the allocations) of formatting an "i/n" progress text, with
+ * {@link String#format(String, Object...)} versus the {@link ProgressFormatter}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ProgressFormattingBenchmark {
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private static volatile int sink;
+
+    @Test
+    public void stringFormat() {
+        BenchmarkState state = benchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            sink = String.format("%s/%s", ++i, 1_000_000).length();
+        }
+    }
+
+    @Test
+    public void progressFormatter() {
+        ProgressFormatter formatter = new ProgressFormatter();
+        BenchmarkState state = benchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            sink = formatter.formatCount(++i, 1_000_000).length();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.buggysofts.android.batchworker;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures the cost of collecting one result in the different result modes.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ResultCollectionBenchmark {
+    private static final int EXPECTED_SIZE = 1_000_000;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private static volatile int sink;
+
+    private final ResultConsumer<Integer> consumer = new ResultConsumer<Integer>() {
+        @Override
+        public void onResult(int index, Integer result) {
+            sink = index;
+        }
+    };
+
+    @Test
+    public void retained() {
+        measure(new ResultCollector<Integer>(EXPECTED_SIZE, true, null, false, null));
+    }
+
+    @Test
+    public void retainedWithoutPresizing() {
+        measure(new ResultCollector<Integer>(0, true, null, false, null));
+    }
+
+    @Test
+    public void streamedUnordered() {
+        measure(new ResultCollector<>(EXPECTED_SIZE, false, consumer, false, null));
+    }
+
+    @Test
+    public void streamedOrdered() {
+        measure(new ResultCollector<>(EXPECTED_SIZE, false, consumer, true, null));
+    }
+
+    private void measure(ResultCollector<Integer> collector) {
+        Integer result = 42;
+        BenchmarkState state = benchmarkRule.getState();
+        int index = 0;
+        while (state.keepRunning()) {
+            collector.set(index++, result);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.buggysofts.android.batchworker;
+
+import android.os.Looper;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures the cost of publishing the progress of one task, with a blocking main looper round trip
+ * versus the frame-coalesced {@link ProgressPublisher}.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UiUpdateBenchmark {
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private static volatile int sink;
+
+    @Test
+    public void blockingRoundTrip() {
+        Runnable render = new Runnable() {
+            @Override
+            public void run() {
+                ++sink;
+            }
+        };
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            Loopers.runLocked(Looper.getMainLooper(), render);
+        }
+    }
+
+    @Test
+    public void coalescedPublish() {
+        ProgressPublisher<Void> publisher = new ProgressPublisher<>(
+            new ProgressPublisher.Renderer<Void>() {
+                @Override
+                public Void prepare(int activeIndex, int completedCount) {
+                    return null;
+                }
+
+                @Override
+                public void render(Void prepared, boolean preparedChanged, int activeIndex, int completedCount) {
+                    sink = completedCount;
+                }
+            }
+        );
+        BenchmarkState state = benchmarkRule.getState();
+        int i = 0;
+        while (state.keepRunning()) {
+            publisher.publish(i, ++i);
+        }
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(
+            new Runnable() {
+                @Override
+                public void run() {
+                    publisher.flushAndStop();
+                }
+            }
+        );
+    }
+}